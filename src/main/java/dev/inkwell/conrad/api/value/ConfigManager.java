@@ -63,6 +63,18 @@ public interface ConfigManager {
         ConfigManagerImpl.save(config, valueContainer);
     }
 
+    /**
+     * Queues the config definition to be saved to disk on Conrad's I/O thread.
+     * <p>
+     * Repeated saves of the same config definition and value container within a short window are coalesced into one.
+     *
+     * @param config         the config file to save
+     * @param valueContainer the value container where values are stored
+     */
+    static void saveAsync(ConfigDefinition<?> config, ValueContainer valueContainer) {
+        ConfigManagerImpl.saveAsync(config, valueContainer);
+    }
+
     /**
      * @param configKeyString the path of a config definition
      * @return the config definition if it exists, null otherwise
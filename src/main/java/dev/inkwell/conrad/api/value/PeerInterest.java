@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value;
+
+import dev.inkwell.conrad.api.value.data.DataType;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.api.value.data.SyncType;
+import dev.inkwell.conrad.impl.networking.channels.PeerInterestC2SChannel;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.minecraft.server.network.ServerPlayerEntity;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Declares which synced values of other players a client actually uses, so that the server only forwards those.
+ * <p>
+ * By default, a client is sent every value marked {@link SyncType#P2P} of every other player. Mods can narrow this
+ * down to specific values or to players nearby, or opt out of a config entirely. Values that are only marked
+ * {@link SyncType#INFO} are meant for the server and are never forwarded. Declarations made while connected are sent
+ * to the server right away.
+ */
+public final class PeerInterest {
+    /**
+     * Receive values of every player on the server.
+     */
+    public static final int EVERYWHERE = -1;
+
+    /**
+     * Receive values of players in the same dimension only.
+     */
+    public static final int SAME_DIMENSION = 0;
+
+    private static final Map<ConfigDefinition<?>, Optional<PeerInterest>> DECLARED = new ConcurrentHashMap<>();
+
+    private final ConfigDefinition<?> configDefinition;
+    private final @Nullable Set<ValueKey<?>> keys;
+    private final int range;
+
+    private PeerInterest(ConfigDefinition<?> configDefinition, @Nullable Set<ValueKey<?>> keys, int range) {
+        this.configDefinition = configDefinition;
+        this.keys = keys;
+        this.range = range;
+    }
+
+    /**
+     * Declares that this client uses the specified values of other players, wherever they are.
+     *
+     * @param keys the values used, or none for every P2P value of the config
+     */
+    @Environment(EnvType.CLIENT)
+    public static void subscribe(ConfigDefinition<?> configDefinition, ValueKey<?>... keys) {
+        subscribe(configDefinition, EVERYWHERE, keys);
+    }
+
+    /**
+     * Declares that this client uses the specified values of other players within range.
+     *
+     * @param range {@link #EVERYWHERE}, {@link #SAME_DIMENSION}, or a distance in blocks within the same dimension
+     * @param keys  the values used, or none for every P2P value of the config
+     */
+    @Environment(EnvType.CLIENT)
+    public static void subscribe(ConfigDefinition<?> configDefinition, int range, ValueKey<?>... keys) {
+        DECLARED.put(configDefinition, Optional.of(of(configDefinition, range, keys.length == 0 ? null : Arrays.asList(keys))));
+        PeerInterestC2SChannel.sendToServer();
+    }
+
+    /**
+     * Declares that this client doesn't use any values of the specified config from other players.
+     */
+    @Environment(EnvType.CLIENT)
+    public static void unsubscribe(ConfigDefinition<?> configDefinition) {
+        DECLARED.put(configDefinition, Optional.empty());
+        PeerInterestC2SChannel.sendToServer();
+    }
+
+    /**
+     * @return what this client uses of each config that other players can forward values of
+     */
+    @ApiStatus.Internal
+    public static List<PeerInterest> getDeclared() {
+        List<PeerInterest> interests = new ArrayList<>();
+
+        for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
+            if (!isForwarded(configDefinition)) continue;
+
+            DECLARED.getOrDefault(configDefinition, Optional.of(of(configDefinition))).ifPresent(interests::add);
+        }
+
+        return interests;
+    }
+
+    /**
+     * @return the default interest in a config, which is every P2P value of every player
+     */
+    @ApiStatus.Internal
+    public static PeerInterest of(ConfigDefinition<?> configDefinition) {
+        return new PeerInterest(configDefinition, null, EVERYWHERE);
+    }
+
+    @ApiStatus.Internal
+    public static PeerInterest of(ConfigDefinition<?> configDefinition, int range, @Nullable Collection<ValueKey<?>> keys) {
+        return new PeerInterest(configDefinition, keys == null ? null : Collections.unmodifiableSet(new HashSet<>(keys)), Math.max(range, EVERYWHERE));
+    }
+
+    /**
+     * @return whether or not any values of the specified config are forwarded to other players
+     */
+    @ApiStatus.Internal
+    public static boolean isForwarded(ConfigDefinition<?> configDefinition) {
+        if (configDefinition.getSaveType() != SaveType.USER) return false;
+
+        for (ValueKey<?> valueKey : configDefinition) {
+            if (isPeerValue(valueKey)) return true;
+        }
+
+        return false;
+    }
+
+    private static boolean isPeerValue(ValueKey<?> valueKey) {
+        return valueKey.getData(DataType.SYNC_TYPE).contains(SyncType.P2P);
+    }
+
+    public ConfigDefinition<?> getConfigDefinition() {
+        return this.configDefinition;
+    }
+
+    /**
+     * @return the values used, or null for every P2P value of the config
+     */
+    public @Nullable Set<ValueKey<?>> getKeys() {
+        return this.keys;
+    }
+
+    public int getRange() {
+        return this.range;
+    }
+
+    /**
+     * @return whether or not the specified value should be forwarded
+     */
+    public boolean test(ValueKey<?> valueKey) {
+        return isPeerValue(valueKey) && (this.keys == null || this.keys.contains(valueKey));
+    }
+
+    /**
+     * @return whether or not values of a player should be forwarded to another player, based on where they are
+     */
+    public boolean isInRange(ServerPlayerEntity receiver, ServerPlayerEntity sender) {
+        if (this.range == EVERYWHERE) return true;
+        if (receiver.getServerWorld() != sender.getServerWorld()) return false;
+
+        return this.range == SAME_DIMENSION || receiver.squaredDistanceTo(sender) <= (double) this.range * this.range;
+    }
+}
@@ -25,7 +25,7 @@ import net.minecraft.server.network.ServerPlayerEntity;
 public class SyncConfigValues {
     @Environment(EnvType.CLIENT)
     public static void sendConfigValues(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
-        ConfigValueC2SChannel.sendToServer(configDefinition, valueContainer);
+        ConfigValueC2SChannel.enqueue(configDefinition, valueContainer);
     }
 
     private static <R> void sendConfigValues(ConfigDefinition<R> configDefinition, ServerPlayerEntity player, ValueContainer valueContainer) {
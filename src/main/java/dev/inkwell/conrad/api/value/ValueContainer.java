@@ -19,6 +19,7 @@ package dev.inkwell.conrad.api.value;
 import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.api.value.serialization.ConfigSerializer;
 import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.storage.ConfigJournal;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.FabricLoader;
 import org.jetbrains.annotations.ApiStatus;
@@ -44,6 +45,9 @@ public class ValueContainer {
     private final Map<ValueKey<?>, Object> values = new ConcurrentHashMap<>();
     private final Map<ConfigDefinition<?>, Map<ValueKey<?>, Boolean>> modifications = new ConcurrentHashMap<>();
     private final Collection<SaveType> saveTypes = new HashSet<>();
+    private final Map<ConfigDefinition<?>, Boolean> deferred = new ConcurrentHashMap<>();
+
+    private boolean detached;
 
     ValueContainer(Path saveDirectory, SaveType... saveTypes) {
         this.saveDirectory = saveDirectory;
@@ -64,6 +68,38 @@ public class ValueContainer {
         return valueContainer;
     }
 
+    /**
+     * Creates a value container that isn't backed by a directory, used to stage values before they are applied to
+     * another container. Value listeners are not notified of changes made to a detached container.
+     *
+     * @param saveTypes the save types this container holds
+     * @return a new, empty value container
+     */
+    @ApiStatus.Internal
+    public static ValueContainer detached(SaveType... saveTypes) {
+        ValueContainer valueContainer = new ValueContainer(null, saveTypes);
+        valueContainer.detached = true;
+
+        return valueContainer;
+    }
+
+    /**
+     * Creates a detached value container that reads from and saves to the specified directory, without loading any
+     * config files up front. Used to work on config directories other than the active ones, such as when migrating
+     * worlds that aren't loaded.
+     *
+     * @param saveDirectory the directory config files are stored in
+     * @param saveTypes     the save types this container holds
+     * @return a new, empty value container
+     */
+    @ApiStatus.Internal
+    public static ValueContainer detached(Path saveDirectory, SaveType... saveTypes) {
+        ValueContainer valueContainer = new ValueContainer(saveDirectory, saveTypes);
+        valueContainer.detached = true;
+
+        return valueContainer;
+    }
+
     /**
      * Puts the specified value into this value container.
      *
@@ -83,6 +119,8 @@ public class ValueContainer {
             return null;
         }
 
+        this.ensureLoaded(valueKey.getConfig());
+
         //noinspection unchecked
         T result = (T) (this.values.containsKey(valueKey)
                 ? this.values.get(valueKey)
@@ -106,6 +144,8 @@ public class ValueContainer {
      */
     @ApiStatus.Internal
     public <T> T get(ValueKey<T> valueKey) {
+        this.ensureLoaded(valueKey.getConfig());
+
         if (!this.values.containsKey(valueKey)) {
             this.values.put(valueKey, valueKey.getDefaultValue());
         }
@@ -114,6 +154,18 @@ public class ValueContainer {
         return (T) this.values.get(valueKey);
     }
 
+    /**
+     * Determines whether a value is stored for the specified config key. Note that {@link #get} stores the default
+     * value of keys that don't have one yet.
+     *
+     * @param valueKey the key of the value to check
+     * @return whether or not a value is stored for the key
+     */
+    @ApiStatus.Internal
+    public boolean hasValue(ValueKey<?> valueKey) {
+        return this.values.containsKey(valueKey);
+    }
+
     /**
      * Gets the number of values belonging to the specified config key that have unsaved modifications.
      *
@@ -140,20 +192,122 @@ public class ValueContainer {
      * @param configDefinition the config file in question
      */
     public <R> void save(ConfigDefinition<R> configDefinition) {
+        this.trySave(configDefinition);
+    }
+
+    /**
+     * Saves the specified config file to disk. Its unsaved changes are only cleared if it was actually written.
+     *
+     * @param configDefinition the config file in question
+     * @return whether or not the config file was written
+     */
+    @ApiStatus.Internal
+    public <R> boolean trySave(ConfigDefinition<R> configDefinition) {
         if (this.saveDirectory == null) {
             ConfigManagerImpl.LOGGER.warn("Attempted to save ValueContainer with null save directory.");
-            return;
+            return false;
         }
 
+        this.ensureLoaded(configDefinition);
+
         ConfigSerializer<R> serializer = configDefinition.getSerializer();
 
         try {
-            serializer.serialize(configDefinition, this);
+            if (ConfigJournal.isJournaled(configDefinition)) {
+                ConfigJournal.append(configDefinition, this);
+            } else {
+                serializer.serialize(configDefinition, this);
+            }
         } catch (IOException e) {
             ConfigManagerImpl.LOGGER.error("Failed to save '{}' to disk", configDefinition);
+            return false;
         }
 
         this.modifications.remove(configDefinition);
+
+        return true;
+    }
+
+    /**
+     * Clears the unsaved changes of the specified config file without writing it, for when the values in this
+     * container were just read from the file itself.
+     *
+     * @param configDefinition the config file in question
+     */
+    @ApiStatus.Internal
+    public void markSaved(ConfigDefinition<?> configDefinition) {
+        this.modifications.remove(configDefinition);
+    }
+
+    /**
+     * Clears the unsaved changes of the specified config file, for when a save of it has been queued.
+     *
+     * @param configDefinition the config file in question
+     * @return the keys of the values that had unsaved changes, see {@link #restoreUnsavedChanges}
+     */
+    @ApiStatus.Internal
+    public Set<ValueKey<?>> takeUnsavedChanges(ConfigDefinition<?> configDefinition) {
+        Map<ValueKey<?>, Boolean> modified = this.modifications.remove(configDefinition);
+
+        return modified == null ? Collections.emptySet() : modified.keySet();
+    }
+
+    /**
+     * Marks the specified values as having unsaved changes again, for when a queued save of them failed.
+     *
+     * @param configDefinition the config file in question
+     * @param valueKeys        the keys of the values that weren't saved
+     */
+    @ApiStatus.Internal
+    public void restoreUnsavedChanges(ConfigDefinition<?> configDefinition, Collection<ValueKey<?>> valueKeys) {
+        if (valueKeys.isEmpty()) return;
+
+        Map<ValueKey<?>, Boolean> modified = this.modifications.computeIfAbsent(configDefinition, key -> new HashMap<>());
+
+        for (ValueKey<?> valueKey : valueKeys) {
+            modified.put(valueKey, true);
+        }
+    }
+
+    /**
+     * Marks the specified config file as not yet read from disk. It will be loaded the first time one of its values is
+     * accessed through this container.
+     *
+     * @param configDefinition the config file in question
+     */
+    @ApiStatus.Internal
+    public void defer(ConfigDefinition<?> configDefinition) {
+        this.deferred.put(configDefinition, true);
+    }
+
+    /**
+     * @param configDefinition the config file in question
+     * @return whether or not the config file has been read from disk into this container
+     */
+    public boolean isLoaded(ConfigDefinition<?> configDefinition) {
+        return !this.deferred.containsKey(configDefinition);
+    }
+
+    /**
+     * Loads the specified config file if it was deferred and has not been loaded yet.
+     *
+     * @param configDefinition the config file in question
+     */
+    @ApiStatus.Internal
+    public void ensureLoaded(ConfigDefinition<?> configDefinition) {
+        if (this.deferred.isEmpty() || !this.deferred.containsKey(configDefinition)) return;
+
+        synchronized (this.deferred) {
+            // Loading puts values back into this container, so we mark the definition as in progress rather than
+            // removing it; other threads will wait on the lock until the values are actually present
+            if (this.deferred.replace(configDefinition, true, false)) {
+                try {
+                    ConfigManagerImpl.loadDeferred(configDefinition, this);
+                } finally {
+                    this.deferred.remove(configDefinition);
+                }
+            }
+        }
     }
 
     /**
@@ -164,6 +318,13 @@ public class ValueContainer {
         return this.saveTypes.contains(saveType);
     }
 
+    /**
+     * @return whether or not this is a detached container used for staging values
+     */
+    public boolean isDetached() {
+        return this.detached;
+    }
+
     /**
      * @return the directory this value container saves configs to
      */
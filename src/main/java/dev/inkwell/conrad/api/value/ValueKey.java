@@ -27,6 +27,7 @@ import dev.inkwell.conrad.impl.ConfigManagerImpl;
 import dev.inkwell.conrad.impl.data.KeyView;
 import dev.inkwell.conrad.impl.exceptions.ConfigIdentifierException;
 import dev.inkwell.conrad.impl.exceptions.ConfigValueException;
+import dev.inkwell.conrad.impl.util.CommentCache;
 import dev.inkwell.vivian.api.util.SuggestionProvider;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
@@ -34,7 +35,6 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.function.BiConsumer;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -205,6 +205,10 @@ public final class ValueKey<T> implements Comparable<ValueKey<?>>, KeyView<T> {
 
         T oldValue = valueContainer.put(this, newValue);
 
+        if (valueContainer.isDetached()) {
+            return oldValue;
+        }
+
         if (valueContainer instanceof PlayerValueContainer) {
             UUID playerId = ((PlayerValueContainer) valueContainer).getPlayerId();
             this.playerListeners.forEach(listener -> listener.accept(oldValue, newValue, playerId));
@@ -250,6 +254,7 @@ public final class ValueKey<T> implements Comparable<ValueKey<?>>, KeyView<T> {
         assertNotPostInitialized();
 
         this.flags.addAll(flags);
+        CommentCache.invalidate(this);
     }
 
     @NotNull
@@ -266,6 +271,7 @@ public final class ValueKey<T> implements Comparable<ValueKey<?>>, KeyView<T> {
         assertNotPostInitialized();
 
         this.data.computeIfAbsent(dataType, t -> new ArrayList<>()).addAll(data);
+        CommentCache.invalidate(this);
     }
 
     @SuppressWarnings("unchecked")
@@ -547,24 +553,6 @@ public final class ValueKey<T> implements Comparable<ValueKey<?>>, KeyView<T> {
         public ValueKey<T> build() {
             Collection<Constraint<T>> c = new ArrayList<>(this.collectionConstraints);
 
-            c.add(new Constraint<T>("compound_value") {
-                @Override
-                public boolean passes(T value) {
-                    for (V v : value.getValues()) {
-                        for (Constraint<V> c : constraints) {
-                            if (!c.passes(v)) return false;
-                        }
-                    }
-
-                    return true;
-                }
-
-                @Override
-                public void addLines(Consumer<String> linesConsumer) {
-                    constraints.forEach(constraint -> constraint.addLines(linesConsumer));
-                }
-            });
-
             c.add(new Constraint.Value<>("compound_value", this.constraints));
             c.add(new Constraint.Key<>("key_constraints", this.keyConstraints));
 
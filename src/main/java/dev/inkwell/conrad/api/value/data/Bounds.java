@@ -66,4 +66,9 @@ public class Bounds<T extends Number & Comparable<T>> extends Constraint<T> {
     public boolean passes(T value) {
         return value.compareTo(this.min) >= 0 && value.compareTo(this.max) <= 0;
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
@@ -19,6 +19,7 @@ package dev.inkwell.conrad.api.value.data;
 import dev.inkwell.conrad.api.value.util.ListView;
 import dev.inkwell.conrad.api.value.util.StronglyTypedImmutableCollection;
 import dev.inkwell.conrad.api.value.util.Table;
+import dev.inkwell.conrad.impl.util.Parallel;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -48,6 +49,16 @@ public abstract class Constraint<T> {
      */
     public abstract boolean passes(T value);
 
+    /**
+     * Elements of very large arrays and tables are only tested on several threads at once if all of their constraints
+     * opt in here. Other constraints are only ever tested from one thread at a time.
+     *
+     * @return whether or not {@link #passes} can be called from several threads at once
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Can be overridden to allow constraints to append multiple lines to config files.
      * <p>
@@ -104,10 +115,23 @@ public abstract class Constraint<T> {
 
         @Override
         public boolean passes(T value) {
+            if (Parallel.isWorthwhile(value.size()) && this.isThreadSafe()) {
+                List<V> values = new ArrayList<>(value.size());
+                value.getValues().forEach(values::add);
+
+                return Parallel.allMatch(values, this::passesAll);
+            }
+
             for (V v : value.getValues()) {
-                for (Constraint<V> constraint : this.constraints) {
-                    if (!constraint.passes(v)) return false;
-                }
+                if (!this.passesAll(v)) return false;
+            }
+
+            return true;
+        }
+
+        private boolean passesAll(V v) {
+            for (Constraint<V> constraint : this.constraints) {
+                if (!constraint.passes(v)) return false;
             }
 
             return true;
@@ -117,6 +141,15 @@ public abstract class Constraint<T> {
             return new ListView<>(this.constraints);
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            for (Constraint<?> constraint : this.constraints) {
+                if (!constraint.isThreadSafe()) return false;
+            }
+
+            return true;
+        }
+
         @Override
         public void addLines(Consumer<String> linesConsumer) {
             this.constraints.forEach(constraint -> constraint.addLines(linesConsumer));
@@ -148,10 +181,29 @@ public abstract class Constraint<T> {
 
         @Override
         public boolean passes(T value) {
+            if (Parallel.isWorthwhile(value.size()) && this.isThreadSafe()) {
+                return Parallel.allMatch(value.asList(), entry -> this.passesAll(entry.getKey()));
+            }
+
             for (Table.Entry<String, ?> entry : value) {
-                for (Constraint<String> constraint : this.constraints) {
-                    if (!constraint.passes(entry.getKey())) return false;
-                }
+                if (!this.passesAll(entry.getKey())) return false;
+            }
+
+            return true;
+        }
+
+        private boolean passesAll(String key) {
+            for (Constraint<String> constraint : this.constraints) {
+                if (!constraint.passes(key)) return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            for (Constraint<?> constraint : this.constraints) {
+                if (!constraint.isThreadSafe()) return false;
             }
 
             return true;
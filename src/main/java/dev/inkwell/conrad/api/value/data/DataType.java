@@ -42,6 +42,8 @@ public class DataType<T> extends StringIdentifiable {
         }
     };
     public static final DataType<SyncType> SYNC_TYPE = new DataType<>("sync_type");
+    public static final DataType<LoadType> LOAD_TYPE = new DataType<>("load_type");
+    public static final DataType<StorageType> STORAGE_TYPE = new DataType<>("storage_type");
 
     public static final DataType<ScreenStyle> SCREEN_STYLE = new DataType<>("screen_style");
 
@@ -14,12 +14,21 @@
  * limitations under the License.
  */
 
-package dev.inkwell.conrad.impl.networking.util;
 
-import net.minecraft.network.PacketByteBuf;
+package dev.inkwell.conrad.api.value.data;
 
-import java.util.UUID;
+/**
+ * Controls when a config file is read from disk. See {@link DataType#LOAD_TYPE}.
+ */
+public enum LoadType {
+    /**
+     * Loaded when the game first starts, or when a value container is first created.
+     */
+    EAGER,
 
-public interface ConfigValueSender {
-    void send(String configDefinition, UUID except, PacketByteBuf peerBuf);
+    /**
+     * Registered when the game first starts, but only read from disk the first time one of its values is accessed.
+     * Synced configs are always loaded eagerly.
+     */
+    LAZY
 }
@@ -35,4 +35,9 @@ public class Matches extends Constraint<String> {
     public boolean passes(String value) {
         return value.matches(this.regex);
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
 }
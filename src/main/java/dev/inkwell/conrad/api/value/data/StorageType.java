@@ -0,0 +1,34 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value.data;
+
+/**
+ * Controls how changes to a config file are written to disk. See {@link DataType#STORAGE_TYPE}.
+ */
+public enum StorageType {
+    /**
+     * The whole config file is rewritten every time it is saved.
+     */
+    FILE,
+
+    /**
+     * Changes are appended to a journal next to the config file, which is folded back into the config file in the
+     * background once it grows large or old enough. Changes to single entries of an {@code Array} or {@code Table}
+     * only write that entry. Best suited for configs with very large collections.
+     */
+    JOURNAL
+}
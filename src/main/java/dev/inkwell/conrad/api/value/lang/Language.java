@@ -26,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -36,14 +37,17 @@ public class Language {
     private static final Logger LOGGER = LogManager.getLogger("Fabric|Language");
 
     private final Map<String, String> byTranslationKey = new HashMap<>();
-    private final Map<String, Map<String, String>> byModId = new HashMap<>();
     private final Multimap<String, String> comments = LinkedHashMultimap.create();
 
     public Language() {
     }
 
-    public void add(String mod, Path languageFile) throws IOException {
-        JsonElement json = new JsonParser().parse(Files.newBufferedReader(languageFile));
+    public void add(Path languageFile) throws IOException {
+        JsonElement json;
+
+        try (Reader reader = Files.newBufferedReader(languageFile)) {
+            json = new JsonParser().parse(reader);
+        }
 
         if (!json.isJsonObject()) {
             LOGGER.error("Error parsing language file \"{}\": not a JSON object.", languageFile.toString());
@@ -59,11 +63,11 @@ public class Language {
             String key = entry.getKey();
             String translation = entry.getValue().getAsString();
             this.byTranslationKey.put(key, translation);
-            this.byModId.computeIfAbsent(mod, id -> new HashMap<>()).put(key, translation);
 
-            if (key.matches(".*\\.comment.*")) {
-                key = key.split("\\.comment", 2)[0];
-                comments.put(key, translation);
+            int comment = key.indexOf(".comment");
+
+            if (comment >= 0) {
+                comments.put(key.substring(0, comment), translation);
             }
         }
     }
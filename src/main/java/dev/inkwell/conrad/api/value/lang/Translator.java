@@ -21,17 +21,18 @@ import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,35 +42,91 @@ import java.util.regex.Pattern;
 public class Translator {
     private static final Logger LOGGER = LogManager.getLogger("Fabric|Translator");
     private static final Pattern ARG_FORMAT = Pattern.compile("%(?:(\\d+)\\$)?([A-Za-z%]|$)");
-    private static final Map<String, Language> LANGUAGES = new HashMap<>();
+    private static final Map<String, List<Path>> SOURCES = new HashMap<>();
+    private static final Map<String, List<Path>> VANILLA_SOURCES = new HashMap<>();
+    private static final Map<String, Language> LANGUAGES = new ConcurrentHashMap<>();
+    private static final Map<String, Language> VANILLA_LANGUAGES = new ConcurrentHashMap<>();
+    private static final Language EMPTY = new Language();
+    private static final Map<String, Template> TEMPLATES = new ConcurrentHashMap<>();
+    private static final boolean IS_CLIENT = FabricLoader.getInstance().getEnvironmentType() == EnvType.CLIENT;
+    private static final long LANGUAGE_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private static volatile String language;
+    private static volatile long languageCheckedAt;
+    private static long languageFileModified;
 
     static {
         FabricLoader.getInstance().getAllMods().forEach(modContainer -> {
-            try {
-                if (!Files.exists(modContainer.getPath("assets"))) return;
+            // Vanilla's translations make up the bulk of all translations, but are rarely looked up through here, so
+            // they're kept apart and only parsed when a key isn't found in any mod's files
+            Map<String, List<Path>> sources = modContainer.getMetadata().getId().equals("minecraft")
+                    ? VANILLA_SOURCES
+                    : SOURCES;
+
+            Path assets = modContainer.getPath("assets");
+
+            if (!Files.isDirectory(assets)) return;
 
-                Files.walk(modContainer.getPath("assets")).forEach(path -> {
-                    if (path.toString().matches(".*lang.[a-z_]+(\\.json)$")) {
-                        String langCode = path.getFileName().toString().split("\\.")[0];
+            try (DirectoryStream<Path> namespaces = Files.newDirectoryStream(assets)) {
+                for (Path namespace : namespaces) {
+                    Path lang = namespace.resolve("lang");
 
-                        try {
-                            LANGUAGES.computeIfAbsent(langCode, langCode1 -> new Language()).add(modContainer.getMetadata().getId(), path);
-                        } catch (IOException e) {
-                            LOGGER.error(e.getMessage());
+                    if (!Files.isDirectory(lang)) continue;
+
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(lang, "*.json")) {
+                        for (Path path : files) {
+                            String langCode = path.getFileName().toString().split("\\.")[0];
+
+                            if (langCode.matches("[a-z_]+")) {
+                                sources.computeIfAbsent(langCode, code -> new ArrayList<>()).add(path);
+                            }
                         }
                     }
-                });
+                }
             } catch (IOException e) {
                 LOGGER.error(e.getMessage());
             }
         });
     }
 
+    /**
+     * @return the code of the language currently selected, e.g. 'en_us'
+     */
+    public static @NotNull String getLanguageCode() {
+        return getLanguage();
+    }
+
+    /**
+     * Called on the client whenever the game's language is (re)loaded.
+     *
+     * @param languageCode the code of the newly selected language
+     */
+    @ApiStatus.Internal
+    public static void setLanguage(@NotNull String languageCode) {
+        language = languageCode;
+    }
+
     private static @NotNull String getLanguage() {
+        String language = Translator.language;
+
+        if (language != null && (IS_CLIENT || System.nanoTime() - languageCheckedAt < LANGUAGE_CHECK_INTERVAL)) {
+            return language;
+        }
+
+        synchronized (Translator.class) {
+            if (Translator.language == null || !IS_CLIENT && System.nanoTime() - languageCheckedAt >= LANGUAGE_CHECK_INTERVAL) {
+                Translator.language = resolveLanguage();
+            }
+
+            return Translator.language;
+        }
+    }
+
+    private static @NotNull String resolveLanguage() {
         FabricLoader loader = FabricLoader.getInstance();
         Path gameDir = loader.getGameDir().normalize();
 
-        if (loader.getEnvironmentType() == EnvType.CLIENT) {
+        if (IS_CLIENT) {
             try {
                 Path path = gameDir.resolve("options.txt");
 
@@ -85,10 +142,20 @@ public class Translator {
             }
         } else {
             Path options = gameDir.resolve("lang.txt");
+            languageCheckedAt = System.nanoTime();
 
             if (Files.exists(options)) {
                 try {
-                    for (String line : Files.readAllLines(gameDir.resolve("lang.txt"))) {
+                    long modified = Files.getLastModifiedTime(options).toMillis();
+
+                    // Only re-read the file when it has actually been changed since the last time we read it
+                    if (language != null && modified == languageFileModified) {
+                        return language;
+                    }
+
+                    languageFileModified = modified;
+
+                    for (String line : Files.readAllLines(options)) {
                         if (line.matches("lang:[a-z_]+")) {
                             return line.split(":", 2)[1];
                         }
@@ -108,83 +175,176 @@ public class Translator {
         return "en_us";
     }
 
+    private static Language getLanguageData() {
+        return getLanguageData(SOURCES, LANGUAGES);
+    }
+
+    private static Language getVanillaLanguageData() {
+        return getLanguageData(VANILLA_SOURCES, VANILLA_LANGUAGES);
+    }
+
+    private static Language getLanguageData(Map<String, List<Path>> sources, Map<String, Language> languages) {
+        Language language = getLanguageData(sources, languages, getLanguage());
+
+        if (language == null) {
+            language = getLanguageData(sources, languages, "en_us");
+        }
+
+        return language == null ? EMPTY : language;
+    }
+
+    /**
+     * Language files are only indexed at startup; each language is parsed the first time it is actually used.
+     */
+    private static @Nullable Language getLanguageData(Map<String, List<Path>> sources, Map<String, Language> languages, String languageCode) {
+        Language language = languages.get(languageCode);
+
+        if (language != null || !sources.containsKey(languageCode)) return language;
+
+        return languages.computeIfAbsent(languageCode, code -> {
+            Language result = new Language();
+
+            for (Path path : sources.get(code)) {
+                try {
+                    result.add(path);
+                } catch (IOException e) {
+                    LOGGER.error(e.getMessage());
+                }
+            }
+
+            return result;
+        });
+    }
+
     public static @Nullable String translate(@NotNull String key, Object... args) {
-        String lang = getLanguage();
+        @Nullable String translation = getLanguageData().translate(key);
 
-        @Nullable String translation = LANGUAGES.getOrDefault(lang, LANGUAGES.get(lang)).translate(key);
+        if (translation == null) {
+            translation = getVanillaLanguageData().translate(key);
+        }
 
         if (translation == null) return null;
 
-        Matcher matcher = ARG_FORMAT.matcher(translation);
+        Template template = TEMPLATES.get(translation);
+
+        if (template == null) {
+            template = Template.parse(translation);
+            TEMPLATES.put(translation, template);
+        }
+
+        return template.format(key, args);
+    }
 
-        try {
-            int i = 0;
+    private static String getArg(@NotNull String key, Object[] args, int index) {
+        if (index >= args.length) {
+            throw new RuntimeException(String.format("Failed to translate key \"%s\": couldn't get arg %d from args %s", key, index, Arrays.toString(args)));
+        } else {
+            Object object = args[index];
+            return object == null ? "null" : object.toString();
+        }
+    }
 
-            int j;
-            int l;
+    public static @NotNull Collection<String> getComments(String key) {
+        return getLanguageData().getComments(key);
+    }
 
-            StringBuilder builder = new StringBuilder();
+    /**
+     * A translation split into its literal text and argument references, so that it only needs to be scanned once.
+     */
+    private static final class Template {
+        private final String[] literals;
+        private final int[] arguments;
 
-            for (j = 0; matcher.find(j); j = l) {
-                int k = matcher.start();
-                l = matcher.end();
-                String string2;
+        private Template(String[] literals, int[] arguments) {
+            this.literals = literals;
+            this.arguments = arguments;
+        }
 
-                if (k > j) {
-                    string2 = translation.substring(j, k);
+        private static Template parse(String translation) {
+            List<String> literals = new ArrayList<>();
+            List<Integer> arguments = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            Matcher matcher = ARG_FORMAT.matcher(translation);
 
-                    if (string2.indexOf(37) != -1) {
-                        throw new IllegalArgumentException();
+            try {
+                int i = 0;
+
+                int j;
+                int l;
+
+                for (j = 0; matcher.find(j); j = l) {
+                    int k = matcher.start();
+                    l = matcher.end();
+                    String string2;
+
+                    if (k > j) {
+                        string2 = translation.substring(j, k);
+
+                        if (string2.indexOf(37) != -1) {
+                            throw new IllegalArgumentException();
+                        }
+
+                        literal.append(string2);
                     }
 
-                    builder.append(string2);
-                }
+                    string2 = matcher.group(2);
+                    String string3 = translation.substring(k, l);
+
+                    if ("%".equals(string2) && "%%".equals(string3)) {
+                        literal.append("%");
+                    } else {
+                        if (!"s".equals(string2)) {
+                            throw new RuntimeException("Unsupported format: '" + string3 + "'");
+                        }
 
-                string2 = matcher.group(2);
-                String string3 = translation.substring(k, l);
+                        String string4 = matcher.group(1);
 
-                if ("%".equals(string2) && "%%".equals(string3)) {
-                    builder.append("%");
-                } else {
-                    if (!"s".equals(string2)) {
-                        throw new RuntimeException("Unsupported format: '" + string3 + "'");
+                        literals.add(literal.toString());
+                        arguments.add(string4 != null ? Integer.parseInt(string4) - 1 : i++);
+                        literal.setLength(0);
                     }
+                }
 
-                    String string4 = matcher.group(1);
-                    int m = string4 != null ? Integer.parseInt(string4) - 1 : i++;
+                if (j < translation.length()) {
+                    String string = translation.substring(j);
 
-                    if (m < args.length) {
-                        builder.append(getArg(key, args, m));
+                    if (string.indexOf(37) != -1) {
+                        throw new IllegalArgumentException();
                     }
+
+                    literal.append(string);
                 }
+
+                literals.add(literal.toString());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException(e);
+            }
+
+            int[] indices = new int[arguments.size()];
+
+            for (int i = 0; i < indices.length; ++i) {
+                indices[i] = arguments.get(i);
+            }
+
+            return new Template(literals.toArray(new String[0]), indices);
+        }
+
+        private String format(String key, Object[] args) {
+            if (this.arguments.length == 0) {
+                return this.literals[0];
             }
 
-            if (j < translation.length()) {
-                String string = translation.substring(j);
+            StringBuilder builder = new StringBuilder(this.literals[0]);
 
-                if (string.indexOf(37) != -1) {
-                    throw new IllegalArgumentException();
+            for (int i = 0; i < this.arguments.length; ++i) {
+                if (this.arguments[i] < args.length) {
+                    builder.append(getArg(key, args, this.arguments[i]));
                 }
 
-                builder.append(string);
+                builder.append(this.literals[i + 1]);
             }
 
             return builder.toString();
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException(e);
         }
     }
-
-    private static String getArg(@NotNull String key, Object[] args, int index) {
-        if (index >= args.length) {
-            throw new RuntimeException(String.format("Failed to translate key \"%s\": couldn't get arg %d from args %s", key, index, Arrays.toString(args)));
-        } else {
-            Object object = args[index];
-            return object == null ? "null" : object.toString();
-        }
-    }
-
-    public static @NotNull Collection<String> getComments(String key) {
-        return LANGUAGES.get(getLanguage()).getComments(key);
-    }
 }
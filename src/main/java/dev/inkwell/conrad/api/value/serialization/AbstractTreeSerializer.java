@@ -18,19 +18,17 @@ package dev.inkwell.conrad.api.value.serialization;
 
 import com.google.common.collect.ImmutableCollection;
 import dev.inkwell.conrad.api.value.ConfigDefinition;
-import dev.inkwell.conrad.api.value.ConfigManager;
 import dev.inkwell.conrad.api.value.ValueContainer;
 import dev.inkwell.conrad.api.value.ValueKey;
 import dev.inkwell.conrad.api.value.data.DataType;
+import dev.inkwell.conrad.impl.util.CommentCache;
 import dev.inkwell.conrad.impl.util.ReflectionUtil;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -46,9 +44,10 @@ public abstract class AbstractTreeSerializer<E, O extends E> implements ConfigSe
     @SuppressWarnings("rawtypes")
     private final Map<Class<?>, ValueSerializer> serializableTypes = new HashMap<>();
     private final Map<Class<?>, Function> serializersRequiringDefaults = new HashMap<>();
-    private final Map<Class<?>, ValueSerializer> enumSerializerCache = new HashMap<>();
+    private final Map<Class<?>, ValueSerializer> enumSerializerCache = new ConcurrentHashMap<>();
     @SuppressWarnings("rawtypes")
-    private final Map<Class<?>, ValueSerializer> dataSerializeCache = new HashMap<>();
+    private final Map<Class<?>, ValueSerializer> dataSerializeCache = new ConcurrentHashMap<>();
+    private final Map<ConfigDefinition<?>, Plan<E>> plans = new ConcurrentHashMap<>();
 
     @SuppressWarnings("unchecked")
     protected AbstractTreeSerializer() {
@@ -104,6 +103,14 @@ public abstract class AbstractTreeSerializer<E, O extends E> implements ConfigSe
         throw new RuntimeException("Cannot get serializer for unregistered type '" + valueClass.getName() + "'");
     }
 
+    /**
+     * @param valueClass the class in question
+     * @return whether or not a value serializer was explicitly registered for the specified class
+     */
+    protected final boolean hasSerializer(Class<?> valueClass) {
+        return this.serializableTypes.containsKey(valueClass) || this.serializersRequiringDefaults.containsKey(valueClass);
+    }
+
     protected abstract <V> ValueSerializer<E, ?, V> getDataSerializer(Class<V> clazz);
 
     protected abstract <V> ValueSerializer<E, ?, V> getEnumSerializer(Class<V> valueClass);
@@ -122,17 +129,20 @@ public abstract class AbstractTreeSerializer<E, O extends E> implements ConfigSe
 
     @Override
     public void serialize(ConfigDefinition<O> configDefinition, OutputStream outputStream, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate, boolean minimal) throws IOException {
-        O root = this.start(configDefinition.getData(DataType.COMMENT));
+        CommentCache.Blocks comments = minimal ? null : CommentCache.current();
+        O root = this.start(minimal ? configDefinition.getData(DataType.COMMENT) : comments.get(configDefinition));
 
         this.add(root, "version", this.getSerializer(String.class, "1.0.0").serializeValue(configDefinition.getVersion().toString()), Collections.emptyList());
 
-        for (ValueKey<?> value : configDefinition) {
+        Plan<E> plan = this.getPlan(configDefinition);
+        Object[] objects = plan.newObjects(root);
+
+        for (int i = 0; i < plan.keys.length; ++i) {
+            ValueKey<?> value = plan.keys[i];
+
             if (valuePredicate.test(value)) {
-                doNested(root, value, (object, key) -> {
-                    Object v = valueContainer.get(value);
-                    Collection<String> comments = minimal ? Collections.emptyList() : ConfigManager.getComments(value);
-                    this.add(object, key, this.getSerializer(value).serializeValue(v), comments);
-                });
+                Object v = valueContainer.get(value);
+                this.add(this.getObject(plan, objects, plan.objects[i]), plan.names[i], plan.serializers[i].serializeValue(v), minimal ? Collections.emptyList() : comments.get(value));
             }
         }
 
@@ -144,39 +154,102 @@ public abstract class AbstractTreeSerializer<E, O extends E> implements ConfigSe
 
     @Override
     public void deserialize(ConfigDefinition<O> configDefinition, InputStream inputStream, ValueContainer valueContainer) throws IOException {
-        O root = this.getRepresentation(inputStream);
-
-        for (ValueKey<?> value : configDefinition) {
-            this.handle(root, valueContainer, value);
-        }
+        this.deserializeRepresentation(configDefinition, this.getRepresentation(inputStream), valueContainer);
     }
 
-    private <T> void handle(O root, ValueContainer valueContainer, ValueKey<T> value) {
-        doNested(root, value, (object, key) -> {
-            ValueSerializer<E, ?, T> serializer = this.getSerializer(value);
-            E representation = this.get(object, key);
+    @Override
+    public boolean deserializeRepresentation(ConfigDefinition<O> configDefinition, O root, ValueContainer valueContainer) {
+        Plan<E> plan = this.getPlan(configDefinition);
+        Object[] objects = plan.newObjects(root);
+
+        for (int i = 0; i < plan.keys.length; ++i) {
+            E representation = this.get(this.getObject(plan, objects, plan.objects[i]), plan.names[i]);
 
             if (representation != null) {
-                value.setValue(serializer.deserialize(representation), valueContainer);
+                this.handle(plan, i, representation, valueContainer);
             }
-        });
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void handle(Plan<E> plan, int i, E representation, ValueContainer valueContainer) {
+        ValueKey<T> value = (ValueKey<T>) plan.keys[i];
+        ValueSerializer<E, ?, T> serializer = (ValueSerializer<E, ?, T>) plan.serializers[i];
+
+        value.setValue(serializer.deserialize(representation), valueContainer);
     }
 
-    private void doNested(O root, ValueKey<?> value, Consumer<O, String> consumer) {
-        O object = root;
-        String[] path = value.getPath();
+    /**
+     * Gets the nested object with the specified index in the plan, creating it and its parents if necessary.
+     */
+    @SuppressWarnings("unchecked")
+    private O getObject(Plan<E> plan, Object[] objects, int object) {
+        if (objects[object] == null) {
+            O parent = this.getObject(plan, objects, plan.parents[object]);
+            O existing = this.get(parent, plan.objectNames[object]);
+
+            objects[object] = existing != null
+                    ? existing
+                    : this.add(parent, plan.objectNames[object], this.start(null), Collections.emptyList());
+        }
+
+        return (O) objects[object];
+    }
 
-        for (int i = 0; i < path.length; ++i) {
-            if (i == path.length - 1) {
-                consumer.consume(object, path[i]);
-            } else {
-                if (this.get(object, path[i]) == null) {
-                    object = this.add(object, path[i], this.start(null), Collections.emptyList());
-                } else {
-                    object = this.get(object, path[i]);
+    private Plan<E> getPlan(ConfigDefinition<?> configDefinition) {
+        return this.plans.computeIfAbsent(configDefinition, this::compile);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Plan<E> compile(ConfigDefinition<?> configDefinition) {
+        List<ValueKey<?>> keys = new ArrayList<>();
+
+        for (ValueKey<?> value : configDefinition) {
+            keys.add(value);
+        }
+
+        ValueSerializer<E, ?, ?>[] serializers = new ValueSerializer[keys.size()];
+        String[] names = new String[keys.size()];
+        int[] objects = new int[keys.size()];
+
+        List<String> objectNames = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        Map<String, Integer> objectIds = new HashMap<>();
+
+        // Object 0 is the root
+        objectNames.add(null);
+        parents.add(-1);
+
+        for (int i = 0; i < keys.size(); ++i) {
+            ValueKey<?> value = keys.get(i);
+            String[] path = value.getPath();
+            String prefix = "";
+            int object = 0;
+
+            for (int j = 0; j < path.length - 1; ++j) {
+                prefix = prefix + "/" + path[j];
+
+                Integer id = objectIds.get(prefix);
+
+                if (id == null) {
+                    id = objectNames.size();
+                    objectNames.add(path[j]);
+                    parents.add(object);
+                    objectIds.put(prefix, id);
                 }
+
+                object = id;
             }
+
+            serializers[i] = this.getSerializer(value);
+            names[i] = path[path.length - 1];
+            objects[i] = object;
         }
+
+        return new Plan<>(keys.toArray(new ValueKey<?>[0]), serializers, names, objects,
+                objectNames.toArray(new String[0]), parents.stream().mapToInt(Integer::intValue).toArray());
     }
 
     protected abstract O start(@Nullable Iterable<String> comments);
@@ -187,8 +260,33 @@ public abstract class AbstractTreeSerializer<E, O extends E> implements ConfigSe
 
     protected abstract void write(O root, Writer writer, boolean minimal) throws IOException;
 
-    private interface Consumer<T1, T2> {
-        void consume(T1 t1, T2 t2);
+    /**
+     * Everything needed to (de)serialize a config definition that doesn't depend on its values, resolved once per
+     * definition: the value serializer of each key in definition order, and the nested objects each key belongs to.
+     */
+    private static final class Plan<E> {
+        private final ValueKey<?>[] keys;
+        private final ValueSerializer<E, ?, ?>[] serializers;
+        private final String[] names;
+        private final int[] objects;
+        private final String[] objectNames;
+        private final int[] parents;
+
+        private Plan(ValueKey<?>[] keys, ValueSerializer<E, ?, ?>[] serializers, String[] names, int[] objects, String[] objectNames, int[] parents) {
+            this.keys = keys;
+            this.serializers = serializers;
+            this.names = names;
+            this.objects = objects;
+            this.objectNames = objectNames;
+            this.parents = parents;
+        }
+
+        private Object[] newObjects(Object root) {
+            Object[] objects = new Object[this.objectNames.length];
+            objects[0] = root;
+
+            return objects;
+        }
     }
 
     public interface ValueSerializer<E, R extends E, V> {
@@ -200,5 +298,15 @@ public abstract class AbstractTreeSerializer<E, O extends E> implements ConfigSe
         }
 
         V deserialize(E representation);
+
+        /**
+         * Elements of very large arrays and tables are only processed on several threads at once if their serializer
+         * opts in here, see {@link dev.inkwell.conrad.impl.util.Parallel}. Other serializers are only ever called from one thread at a time.
+         *
+         * @return whether or not this serializer can be called from several threads at once
+         */
+        default boolean isThreadSafe() {
+            return false;
+        }
     }
 }
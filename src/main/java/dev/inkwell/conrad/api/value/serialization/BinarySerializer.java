@@ -0,0 +1,791 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value.serialization;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.util.Array;
+import dev.inkwell.conrad.api.value.util.Table;
+import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.data.DataClassAccessor;
+import dev.inkwell.conrad.impl.exceptions.ConfigSerializationException;
+import dev.inkwell.conrad.impl.util.ReflectionUtil;
+import net.fabricmc.loader.api.VersionParsingException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary serializer for configs that are managed by the game rather than edited by hand, such as per-player
+ * data or server-managed state. Since the same serializer is used to sync configs, these configs also go over the
+ * wire in this format.
+ * <p>
+ * Integers are written as varints, floating point numbers as their raw bits and strings as length-prefixed UTF-8.
+ * Values are identified by their ordinal in the config definition, and the file carries a hash of the definition's
+ * schema. Files also carry a table of key names and value types, so values survive keys being added, removed or
+ * reordered between versions. Minimal output, which is what is sent over the network, leaves that table out and
+ * requires both sides to have the same schema.
+ * <p>
+ * Use {@link ConfigConverter} to convert files between this format and one of the text formats.
+ */
+public class BinarySerializer implements ConfigSerializer<BinarySerializer.Representation> {
+    public static final BinarySerializer INSTANCE = new BinarySerializer();
+
+    private static final int MAGIC = 0x434E5244; // "CNRD"
+    private static final int FORMAT = 1;
+    private static final int FLAG_KEY_TABLE = 1;
+
+    // Lengths and counts come from files and peers alike, so none are trusted with more than these
+    private static final int MAX_LENGTH = 1 << 26;
+    private static final int MAX_COUNT = 1 << 22;
+    private static final int CHUNK = 1 << 16;
+
+    private final Map<Class<?>, ValueSerializer<?>> serializableTypes = new HashMap<>();
+    private final Map<Class<?>, Function> serializersRequiringDefaults = new HashMap<>();
+    private final Map<Class<?>, EnumSerializer<?>> enumSerializerCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, DataClassSerializer<?>> dataClassSerializerCache = new ConcurrentHashMap<>();
+    private final Map<ConfigDefinition<?>, Plan> plans = new ConcurrentHashMap<>();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BinarySerializer() {
+        this.addSerializer(Boolean.class, new SimpleSerializer<>(DataOutput::writeBoolean, DataInput::readBoolean));
+        this.addSerializer(Integer.class, new SimpleSerializer<>(BinarySerializer::writeVarInt, BinarySerializer::readVarInt));
+        this.addSerializer(Long.class, new SimpleSerializer<>(BinarySerializer::writeVarLong, BinarySerializer::readVarLong));
+        this.addSerializer(String.class, new SimpleSerializer<>(BinarySerializer::writeString, BinarySerializer::readString));
+        this.addSerializer(Float.class, new SimpleSerializer<>(DataOutput::writeFloat, DataInput::readFloat));
+        this.addSerializer(Double.class, new SimpleSerializer<>(DataOutput::writeDouble, DataInput::readDouble));
+
+        this.addSerializer(Array.class, t -> new ArraySerializer<>(t));
+        this.addSerializer(Table.class, t -> new TableSerializer<>(t));
+    }
+
+    public final <T> void addSerializer(Class<T> valueClass, ValueSerializer<T> valueSerializer) {
+        this.serializableTypes.putIfAbsent(valueClass, valueSerializer);
+
+        //noinspection unchecked
+        valueClass = (Class<T>) ReflectionUtil.getClass(valueClass);
+
+        for (Class<?> clazz : ReflectionUtil.getClasses(valueClass)) {
+            this.serializableTypes.putIfAbsent(clazz, valueSerializer);
+        }
+    }
+
+    protected final <T> void addSerializer(Class<T> valueClass, Function<T, ValueSerializer<T>> serializerBuilder) {
+        this.serializersRequiringDefaults.putIfAbsent(valueClass, serializerBuilder);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected final <V> ValueSerializer<V> getSerializer(Class<V> valueClass, V defaultValue) {
+        if (valueClass.isEnum()) {
+            return (ValueSerializer<V>) this.enumSerializerCache.computeIfAbsent(valueClass, EnumSerializer::new);
+        }
+
+        if (this.serializableTypes.containsKey(valueClass)) {
+            return (ValueSerializer<V>) serializableTypes.get(valueClass);
+        }
+
+        if (this.serializersRequiringDefaults.containsKey(valueClass)) {
+            return (ValueSerializer<V>) serializersRequiringDefaults.get(valueClass).apply(defaultValue);
+        }
+
+        return (ValueSerializer<V>) this.dataClassSerializerCache.computeIfAbsent(valueClass, DataClassSerializer::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected final <V> ValueSerializer<V> getSerializer(ValueKey<V> valueKey) {
+        V defaultValue = valueKey.getDefaultValue();
+
+        return this.getSerializer((Class<V>) defaultValue.getClass(), defaultValue);
+    }
+
+    @Override
+    public void serialize(ConfigDefinition<Representation> configDefinition, OutputStream outputStream, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate, boolean minimal) throws IOException {
+        Plan plan = this.getPlan(configDefinition);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+
+        output.writeInt(MAGIC);
+        output.writeByte(FORMAT);
+        output.writeByte(minimal ? 0 : FLAG_KEY_TABLE);
+        output.writeInt(plan.schemaHash);
+        writeString(output, configDefinition.getVersion().toString());
+
+        if (!minimal) {
+            writeVarInt(output, plan.keys.length);
+
+            for (int i = 0; i < plan.keys.length; ++i) {
+                writeString(output, plan.names[i]);
+                output.writeInt(plan.typeHashes[i]);
+            }
+        }
+
+        this.writeValues(configDefinition, output, valueContainer, valuePredicate);
+
+        output.flush();
+        output.close();
+    }
+
+    /**
+     * Writes values without a header, as a count followed by the ordinal, length and payload of each value. Ordinals
+     * are only meaningful to readers with the same schema, see {@link #getSchemaHash}.
+     *
+     * @param configDefinition the config definition the values belong to
+     * @param output           the output to write values to
+     * @param valueContainer   the container holding values of {@param configDefinition}
+     * @param valuePredicate   which values to write
+     */
+    public void writeValues(ConfigDefinition<?> configDefinition, DataOutput output, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate) throws IOException {
+        Plan plan = this.getPlan(configDefinition);
+        int count = 0;
+
+        for (ValueKey<?> valueKey : plan.keys) {
+            if (valuePredicate.test(valueKey)) ++count;
+        }
+
+        writeVarInt(output, count);
+
+        // Each value is length-prefixed so that readers can skip values they can't decode
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream bufferOutput = new DataOutputStream(buffer);
+
+        for (int i = 0; i < plan.keys.length; ++i) {
+            if (valuePredicate.test(plan.keys[i])) {
+                buffer.reset();
+                plan.serializers[i].writeValue(bufferOutput, valueContainer.get(plan.keys[i]));
+
+                writeVarInt(output, i);
+                writeVarInt(output, buffer.size());
+                output.write(buffer.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Encodes a single value the same way {@link #writeValues} does, without its ordinal or length.
+     *
+     * @param valueKey the key the value belongs to
+     * @param value    the value to encode
+     * @return the encoded value
+     */
+    public byte[] encode(ValueKey<?> valueKey, Object value) throws IOException {
+        Plan plan = this.getPlan(valueKey.getConfig());
+        Integer index = plan.indices.get(valueKey.getPathString());
+
+        if (index == null) {
+            throw new IOException("Value '" + valueKey + "' is not part of its config's schema");
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        plan.serializers[index].writeValue(new DataOutputStream(buffer), value);
+
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Reads values written by {@link #writeValues} with the same schema.
+     *
+     * @param configDefinition the config definition the values belong to
+     * @param input            the input to read values from
+     * @param valueContainer   the container to put values into
+     */
+    public void readValues(ConfigDefinition<?> configDefinition, DataInput input, ValueContainer valueContainer) throws IOException {
+        Plan plan = this.getPlan(configDefinition);
+        int count = readLength(input, MAX_COUNT);
+
+        for (int i = 0; i < count; ++i) {
+            int ordinal = readVarInt(input);
+            byte[] payload = readBytes(input);
+
+            if (ordinal >= 0 && ordinal < plan.keys.length) {
+                this.put(plan, ordinal, payload, valueContainer);
+            }
+        }
+    }
+
+    /**
+     * @return a hash of the paths, order and encoded types of the values of a config definition
+     */
+    public int getSchemaHash(ConfigDefinition<?> configDefinition) {
+        return this.getPlan(configDefinition).schemaHash;
+    }
+
+    @Override
+    public void deserialize(ConfigDefinition<Representation> configDefinition, InputStream inputStream, ValueContainer valueContainer) throws IOException {
+        Plan plan = this.getPlan(configDefinition);
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream))) {
+            Header header = readHeader(input);
+            boolean schemaMatches = header.schemaHash == plan.schemaHash;
+
+            if (schemaMatches) {
+                this.readValues(configDefinition, input, valueContainer);
+                return;
+            }
+
+            if (header.names == null) {
+                throw new ConfigSerializationException("Schema of '" + configDefinition + "' doesn't match the one it was written with");
+            }
+
+            int count = readLength(input, MAX_COUNT);
+
+            for (int i = 0; i < count; ++i) {
+                int ordinal = readVarInt(input);
+                byte[] payload = readBytes(input);
+
+                Integer current = ordinal >= 0 && ordinal < header.names.length ? plan.indices.get(header.names[ordinal]) : null;
+
+                // Values whose type changed since they were written are dropped rather than misread
+                if (current == null || plan.typeHashes[current] != header.typeHashes[ordinal]) continue;
+
+                this.put(plan, current, payload, valueContainer);
+            }
+        }
+    }
+
+    /**
+     * Loads values by path from an upgraded representation. Since representations don't carry value types, values
+     * that can no longer be decoded are skipped.
+     */
+    @Override
+    public boolean deserializeRepresentation(ConfigDefinition<Representation> configDefinition, Representation representation, ValueContainer valueContainer) {
+        Plan plan = this.getPlan(configDefinition);
+
+        for (Map.Entry<String, byte[]> entry : representation.getValues().entrySet()) {
+            Integer index = plan.indices.get(entry.getKey());
+
+            if (index == null) continue;
+
+            try {
+                this.put(plan, index, entry.getValue(), valueContainer);
+            } catch (IOException | RuntimeException e) {
+                ConfigManagerImpl.LOGGER.warn("Skipping value '{}' of '{}': {}", entry.getKey(), configDefinition, e.getMessage());
+            }
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> void put(Plan plan, int i, byte[] payload, ValueContainer valueContainer) throws IOException {
+        ValueKey<T> valueKey = (ValueKey<T>) plan.keys[i];
+        ValueSerializer<T> serializer = (ValueSerializer<T>) plan.serializers[i];
+
+        valueKey.setValue(serializer.read(new DataInputStream(new ByteArrayInputStream(payload))), valueContainer);
+    }
+
+    private Plan getPlan(ConfigDefinition<?> configDefinition) {
+        return this.plans.computeIfAbsent(configDefinition, definition -> {
+            List<ValueKey<?>> keys = new ArrayList<>();
+
+            for (ValueKey<?> valueKey : definition) {
+                keys.add(valueKey);
+            }
+
+            int size = keys.size();
+            ValueSerializer<?>[] serializers = new ValueSerializer[size];
+            String[] names = new String[size];
+            int[] typeHashes = new int[size];
+            CRC32 schema = new CRC32();
+
+            for (int i = 0; i < size; ++i) {
+                ValueKey<?> valueKey = keys.get(i);
+                Object defaultValue = valueKey.getDefaultValue();
+
+                serializers[i] = this.getSerializer(valueKey);
+                names[i] = valueKey.getPathString();
+                typeHashes[i] = hash(describe(defaultValue.getClass(), defaultValue));
+
+                // Checksum.update(int) only takes the low byte, and names need their length so that they can't run
+                // into each other
+                byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+                schema.update(ByteBuffer.allocate(Integer.BYTES * 2 + name.length)
+                        .putInt(name.length)
+                        .put(name)
+                        .putInt(typeHashes[i])
+                        .array());
+            }
+
+            return new Plan(keys.toArray(new ValueKey<?>[0]), serializers, names, typeHashes, (int) schema.getValue());
+        });
+    }
+
+    /**
+     * Describes how values of the given type are encoded, so that changes to a value's type change the schema hash.
+     */
+    private String describe(Class<?> valueClass, Object defaultValue) {
+        if (valueClass.isEnum()) {
+            return valueClass.getName() + Arrays.toString(valueClass.getEnumConstants());
+        }
+
+        if (defaultValue instanceof Array) {
+            Array<?> array = (Array<?>) defaultValue;
+            return "Array<" + this.describe(array.getValueClass(), array.getDefaultValue().get()) + ">";
+        }
+
+        if (defaultValue instanceof Table) {
+            Table<?> table = (Table<?>) defaultValue;
+            return "Table<" + this.describe(table.getValueClass(), table.getDefaultValue().get()) + ">";
+        }
+
+        if (this.serializableTypes.containsKey(valueClass) || this.serializersRequiringDefaults.containsKey(valueClass)) {
+            return ReflectionUtil.getClass(valueClass).getName();
+        }
+
+        DataClassAccessor<?> accessor = DataClassAccessor.of(valueClass);
+        Object instance = accessor.newInstance();
+        StringBuilder builder = new StringBuilder(valueClass.getName()).append('{');
+
+        for (DataClassAccessor.Property property : accessor.getProperties()) {
+            builder.append(property.getName()).append(':').append(this.describe(property.getType(), property.get(instance))).append(';');
+        }
+
+        return builder.append('}').toString();
+    }
+
+    private static int hash(String string) {
+        CRC32 crc = new CRC32();
+        crc.update(string.getBytes(StandardCharsets.UTF_8));
+
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public @NotNull String getExtension() {
+        return "bin";
+    }
+
+    @Override
+    public @Nullable Version getVersion(InputStream inputStream) throws IOException, VersionParsingException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream))) {
+            return Version.parse(readHeader(input).version);
+        }
+    }
+
+    @Override
+    public @NotNull Representation getRepresentation(InputStream inputStream) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream))) {
+            Header header = readHeader(input);
+            Map<String, byte[]> values = new LinkedHashMap<>();
+            int count = readLength(input, MAX_COUNT);
+
+            for (int i = 0; i < count; ++i) {
+                int ordinal = readVarInt(input);
+                byte[] payload = readBytes(input);
+
+                values.put(header.names == null || ordinal < 0 || ordinal >= header.names.length ? Integer.toString(ordinal) : header.names[ordinal], payload);
+            }
+
+            return new Representation(header.version, header.schemaHash, values);
+        }
+    }
+
+    private static Header readHeader(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a binary config file");
+        }
+
+        int format = input.readUnsignedByte();
+
+        if (format != FORMAT) {
+            throw new IOException("Unsupported binary config format " + format);
+        }
+
+        int flags = input.readUnsignedByte();
+        int schemaHash = input.readInt();
+        String version = readString(input);
+
+        String[] names = null;
+        int[] typeHashes = null;
+
+        if ((flags & FLAG_KEY_TABLE) != 0) {
+            int size = readLength(input, MAX_COUNT);
+            List<String> nameList = new ArrayList<>(Math.min(size, 1024));
+            List<Integer> typeHashList = new ArrayList<>(Math.min(size, 1024));
+
+            for (int i = 0; i < size; ++i) {
+                nameList.add(readString(input));
+                typeHashList.add(input.readInt());
+            }
+
+            names = nameList.toArray(new String[0]);
+            typeHashes = new int[size];
+
+            for (int i = 0; i < size; ++i) {
+                typeHashes[i] = typeHashList.get(i);
+            }
+        }
+
+        return new Header(schemaHash, version, names, typeHashes);
+    }
+
+    public static void writeVarInt(DataOutput output, int value) throws IOException {
+        int zigZag = (value << 1) ^ (value >> 31);
+
+        while ((zigZag & ~0x7F) != 0) {
+            output.writeByte((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+
+        output.writeByte(zigZag);
+    }
+
+    public static int readVarInt(DataInput input) throws IOException {
+        int result = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = input.readByte();
+            result |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return (result >>> 1) ^ -(result & 1);
+            }
+        }
+
+        throw new IOException("VarInt too big");
+    }
+
+    public static void writeVarLong(DataOutput output, long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+
+        while ((zigZag & ~0x7FL) != 0) {
+            output.writeByte((int) (zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+
+        output.writeByte((int) zigZag);
+    }
+
+    public static long readVarLong(DataInput input) throws IOException {
+        long result = 0;
+
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = input.readByte();
+            result |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return (result >>> 1) ^ -(result & 1);
+            }
+        }
+
+        throw new IOException("VarLong too big");
+    }
+
+    public static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    public static String readString(DataInput input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a length or count written with {@link #writeVarInt}.
+     *
+     * @param limit the largest length that is accepted
+     * @throws IOException if the length is negative or larger than {@code limit}
+     */
+    public static int readLength(DataInput input, int limit) throws IOException {
+        int length = readVarInt(input);
+
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid length " + length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Reads a length-prefixed byte array. Large arrays are read in chunks, so that memory is only allocated for bytes
+     * that actually arrive rather than for whatever the prefix claims.
+     */
+    private static byte[] readBytes(DataInput input) throws IOException {
+        int length = readLength(input, MAX_LENGTH);
+
+        if (length <= CHUNK) {
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+
+            return bytes;
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(CHUNK);
+        byte[] chunk = new byte[CHUNK];
+
+        for (int remaining = length; remaining > 0; ) {
+            int read = Math.min(remaining, CHUNK);
+            input.readFully(chunk, 0, read);
+            output.write(chunk, 0, read);
+            remaining -= read;
+        }
+
+        return output.toByteArray();
+    }
+
+    public interface ValueSerializer<V> {
+        void write(DataOutput output, V value) throws IOException;
+
+        @SuppressWarnings("unchecked")
+        default void writeValue(DataOutput output, Object value) throws IOException {
+            this.write(output, (V) value);
+        }
+
+        V read(DataInput input) throws IOException;
+    }
+
+    public interface Writer<V> {
+        void write(DataOutput output, V value) throws IOException;
+    }
+
+    public interface Reader<V> {
+        V read(DataInput input) throws IOException;
+    }
+
+    public static class SimpleSerializer<V> implements ValueSerializer<V> {
+        private final Writer<V> writer;
+        private final Reader<V> reader;
+
+        public SimpleSerializer(Writer<V> writer, Reader<V> reader) {
+            this.writer = writer;
+            this.reader = reader;
+        }
+
+        @Override
+        public void write(DataOutput output, V value) throws IOException {
+            this.writer.write(output, value);
+        }
+
+        @Override
+        public V read(DataInput input) throws IOException {
+            return this.reader.read(input);
+        }
+    }
+
+    /**
+     * The raw contents of a binary config file, used when upgrading. Values are keyed by their path, or by their
+     * ordinal if the file was written without a key table.
+     */
+    public static final class Representation {
+        private final String version;
+        private final int schemaHash;
+        private final Map<String, byte[]> values;
+
+        private Representation(String version, int schemaHash, Map<String, byte[]> values) {
+            this.version = version;
+            this.schemaHash = schemaHash;
+            this.values = values;
+        }
+
+        public String getVersion() {
+            return this.version;
+        }
+
+        public int getSchemaHash() {
+            return this.schemaHash;
+        }
+
+        public Map<String, byte[]> getValues() {
+            return this.values;
+        }
+    }
+
+    private static final class Header {
+        private final int schemaHash;
+        private final String version;
+        private final String @Nullable [] names;
+        private final int @Nullable [] typeHashes;
+
+        private Header(int schemaHash, String version, String @Nullable [] names, int @Nullable [] typeHashes) {
+            this.schemaHash = schemaHash;
+            this.version = version;
+            this.names = names;
+            this.typeHashes = typeHashes;
+        }
+    }
+
+    /**
+     * The value serializer, path and type hash of each key of a config definition, aligned to definition order.
+     */
+    private static final class Plan {
+        private final ValueKey<?>[] keys;
+        private final ValueSerializer<?>[] serializers;
+        private final String[] names;
+        private final int[] typeHashes;
+        private final int schemaHash;
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        private Plan(ValueKey<?>[] keys, ValueSerializer<?>[] serializers, String[] names, int[] typeHashes, int schemaHash) {
+            this.keys = keys;
+            this.serializers = serializers;
+            this.names = names;
+            this.typeHashes = typeHashes;
+            this.schemaHash = schemaHash;
+
+            for (int i = 0; i < names.length; ++i) {
+                this.indices.put(names[i], i);
+            }
+        }
+    }
+
+    private static class EnumSerializer<T> implements ValueSerializer<T> {
+        private final T[] values;
+
+        @SuppressWarnings("unchecked")
+        private EnumSerializer(Class<?> enumClass) {
+            this.values = (T[]) enumClass.getEnumConstants();
+        }
+
+        @Override
+        public void write(DataOutput output, T value) throws IOException {
+            writeVarInt(output, ((Enum<?>) value).ordinal());
+        }
+
+        @Override
+        public T read(DataInput input) throws IOException {
+            int ordinal = readVarInt(input);
+
+            if (ordinal < 0 || ordinal >= this.values.length) {
+                throw new IOException("Invalid ordinal " + ordinal + " for enum '" + this.values.getClass().getComponentType().getSimpleName() + "'");
+            }
+
+            return this.values[ordinal];
+        }
+    }
+
+    private class ArraySerializer<T> implements ValueSerializer<Array<T>> {
+        private final Array<T> defaultValue;
+        private final ValueSerializer<T> serializer;
+
+        private ArraySerializer(Array<T> defaultValue) {
+            this.defaultValue = defaultValue;
+            this.serializer = BinarySerializer.this.getSerializer(defaultValue.getValueClass(), defaultValue.getDefaultValue().get());
+        }
+
+        @Override
+        public void write(DataOutput output, Array<T> value) throws IOException {
+            writeVarInt(output, value.size());
+
+            for (T t : value) {
+                this.serializer.write(output, t);
+            }
+        }
+
+        @Override
+        public Array<T> read(DataInput input) throws IOException {
+            int size = readLength(input, MAX_COUNT);
+            List<T> list = new ArrayList<>(Math.min(size, 1024));
+
+            for (int i = 0; i < size; ++i) {
+                list.add(this.serializer.read(input));
+            }
+
+            //noinspection unchecked
+            T[] values = list.toArray((T[]) java.lang.reflect.Array.newInstance(this.defaultValue.getValueClass(), size));
+
+            return new Array<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
+        }
+    }
+
+    private class TableSerializer<T> implements ValueSerializer<Table<T>> {
+        private final Table<T> defaultValue;
+        private final ValueSerializer<T> serializer;
+
+        private TableSerializer(Table<T> defaultValue) {
+            this.defaultValue = defaultValue;
+            this.serializer = BinarySerializer.this.getSerializer(defaultValue.getValueClass(), defaultValue.getDefaultValue().get());
+        }
+
+        @Override
+        public void write(DataOutput output, Table<T> table) throws IOException {
+            writeVarInt(output, table.size());
+
+            for (Table.Entry<String, T> t : table) {
+                writeString(output, t.getKey());
+                this.serializer.write(output, t.getValue());
+            }
+        }
+
+        @Override
+        public Table<T> read(DataInput input) throws IOException {
+            int size = readLength(input, MAX_COUNT);
+            List<Table.Entry<String, T>> list = new ArrayList<>(Math.min(size, 1024));
+
+            for (int i = 0; i < size; ++i) {
+                list.add(new Table.Entry<>(readString(input), this.serializer.read(input)));
+            }
+
+            //noinspection unchecked
+            Table.Entry<String, T>[] values = list.toArray((Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, size));
+
+            return new Table<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
+        }
+    }
+
+    /**
+     * Writes the properties of a data class in declaration order, without their names; the order is part of the
+     * schema hash.
+     */
+    private class DataClassSerializer<T> implements ValueSerializer<T> {
+        private final DataClassAccessor<T> accessor;
+
+        @SuppressWarnings("unchecked")
+        private DataClassSerializer(Class<?> valueClass) {
+            this.accessor = DataClassAccessor.of((Class<T>) valueClass);
+        }
+
+        @Override
+        public void write(DataOutput output, T value) throws IOException {
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                this.write(output, property, value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private <D> void write(DataOutput output, DataClassAccessor.Property property, T value) throws IOException {
+            D d = (D) property.get(value);
+            BinarySerializer.this.getSerializer((Class<D>) property.getType(), d).write(output, d);
+        }
+
+        @Override
+        public T read(DataInput input) throws IOException {
+            T value = this.accessor.newInstance();
+
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                this.read(input, property, value);
+            }
+
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <D> void read(DataInput input, DataClassAccessor.Property property, T value) throws IOException {
+            D defaultValue = (D) property.get(value);
+            property.set(value, BinarySerializer.this.getSerializer((Class<D>) property.getType(), defaultValue).read(input));
+        }
+    }
+}
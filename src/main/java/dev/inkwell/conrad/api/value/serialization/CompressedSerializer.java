@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value.serialization;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.data.Constraint;
+import dev.inkwell.conrad.api.value.util.Version;
+import net.fabricmc.loader.api.VersionParsingException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.function.Predicate;
+import java.util.zip.*;
+
+/**
+ * Wraps another serializer, compressing the config files it writes.
+ * <p>
+ * Files are only compressed once the wrapped serializer's output reaches a threshold, so small files stay readable.
+ * Compressed files keep the wrapped serializer's extension; whether a file is compressed, and how, is detected from
+ * its magic bytes when it is read, so switching a config to or from compression doesn't require migrating it. Raw
+ * deflate streams have no magic bytes of their own, so they are written behind {@link #DEFLATE_MAGIC}.
+ * <p>
+ * Values sent over the network are never compressed here, since Minecraft already compresses large packets.
+ *
+ * @param <R> the intermediate representation of the wrapped serializer
+ */
+public class CompressedSerializer<R> implements ConfigSerializer<R> {
+    // Starts with a NUL byte, which neither text configs nor the binary format ever do
+    private static final byte[] DEFLATE_MAGIC = {0x00, 'C', 'Z', 0x01};
+    private static final byte[] GZIP_MAGIC = {0x1F, (byte) 0x8B};
+
+    private final ConfigSerializer<R> serializer;
+    private final Format format;
+    private final int level;
+    private final int threshold;
+
+    /**
+     * @param serializer the serializer whose output should be compressed
+     * @param format     the compression format to write
+     * @param level      the compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @param threshold  the minimum size in bytes of the uncompressed output for it to be compressed
+     */
+    public CompressedSerializer(ConfigSerializer<R> serializer, Format format, int level, int threshold) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+
+        this.serializer = serializer;
+        this.format = format;
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Compresses files of 4 KiB and up with gzip, at the default compression level.
+     *
+     * @param serializer the serializer whose output should be compressed
+     */
+    public CompressedSerializer(ConfigSerializer<R> serializer) {
+        this(serializer, Format.GZIP, 6, 4096);
+    }
+
+    @Override
+    public void serialize(ConfigDefinition<R> configDefinition, OutputStream outputStream, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate, boolean minimal) throws IOException {
+        if (minimal) {
+            this.serializer.serialize(configDefinition, outputStream, valueContainer, valuePredicate, true);
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        this.serializer.serialize(configDefinition, buffer, valueContainer, valuePredicate, false);
+
+        try (OutputStream out = buffer.size() < this.threshold ? outputStream : this.format.compress(outputStream, this.level)) {
+            buffer.writeTo(out);
+        }
+    }
+
+    @Override
+    public void deserialize(ConfigDefinition<R> configDefinition, InputStream inputStream, ValueContainer valueContainer) throws IOException {
+        this.serializer.deserialize(configDefinition, decompress(inputStream), valueContainer);
+    }
+
+    @Override
+    public boolean deserializeRepresentation(ConfigDefinition<R> configDefinition, R representation, ValueContainer valueContainer) {
+        return this.serializer.deserializeRepresentation(configDefinition, representation, valueContainer);
+    }
+
+    @Override
+    public @NotNull String getExtension() {
+        return this.serializer.getExtension();
+    }
+
+    @Override
+    public @Nullable Version getVersion(InputStream inputStream) throws IOException, VersionParsingException {
+        return this.serializer.getVersion(decompress(inputStream));
+    }
+
+    @Override
+    public @NotNull R getRepresentation(InputStream inputStream) throws IOException {
+        return this.serializer.getRepresentation(decompress(inputStream));
+    }
+
+    @Override
+    public @Nullable Constraint<String> getKeyConstraint() {
+        return this.serializer.getKeyConstraint();
+    }
+
+    /**
+     * Wraps a stream in the decompressor matching its magic bytes, if it is compressed at all.
+     *
+     * @param inputStream the stream to read
+     * @return a stream of the uncompressed contents
+     */
+    public static InputStream decompress(InputStream inputStream) throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(new BufferedInputStream(inputStream), DEFLATE_MAGIC.length);
+        byte[] header = new byte[DEFLATE_MAGIC.length];
+        int read = 0;
+
+        while (read < header.length) {
+            int n = stream.read(header, read, header.length - read);
+
+            if (n < 0) break;
+
+            read += n;
+        }
+
+        if (startsWith(header, read, DEFLATE_MAGIC)) {
+            return new InflaterInputStream(stream);
+        }
+
+        stream.unread(header, 0, read);
+
+        if (startsWith(header, read, GZIP_MAGIC)) {
+            return new GZIPInputStream(stream);
+        }
+
+        return stream;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+        if (length < magic.length) return false;
+
+        for (int i = 0; i < magic.length; ++i) {
+            if (header[i] != magic[i]) return false;
+        }
+
+        return true;
+    }
+
+    public enum Format {
+        GZIP {
+            @Override
+            OutputStream compress(OutputStream outputStream, int level) throws IOException {
+                return new GZIPOutputStream(outputStream, 8192) {
+                    {
+                        this.def.setLevel(level);
+                    }
+                };
+            }
+        },
+        DEFLATE {
+            @Override
+            OutputStream compress(OutputStream outputStream, int level) throws IOException {
+                outputStream.write(DEFLATE_MAGIC);
+
+                return new DeflaterOutputStream(outputStream, new Deflater(level), 8192) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            // We created this deflater, so the stream won't release it for us
+                            this.def.end();
+                        }
+                    }
+                };
+            }
+        };
+
+        abstract OutputStream compress(OutputStream outputStream, int level) throws IOException;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value.serialization;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Converts a config file from one serialization format to another, e.g. to inspect a {@link BinarySerializer} file
+ * as JSON, or to turn a hand-edited file back into binary.
+ */
+public final class ConfigConverter {
+    private ConfigConverter() {
+    }
+
+    /**
+     * Reads every value of a config definition using one serializer and writes them back out using another.
+     * <p>
+     * Values are staged in a detached value container, so no listeners are notified and no other container is
+     * affected. Values missing from the input are written out as their defaults.
+     *
+     * @param configDefinition the definition of the config being converted
+     * @param from             the serializer the input was written with
+     * @param inputStream      the config to convert
+     * @param to               the serializer to write the output with
+     * @param outputStream     the stream to write the converted config to
+     * @throws IOException if reading or writing failed
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static void convert(ConfigDefinition<?> configDefinition, ConfigSerializer<?> from, InputStream inputStream, ConfigSerializer<?> to, OutputStream outputStream) throws IOException {
+        ValueContainer valueContainer = ValueContainer.detached(configDefinition.getSaveType());
+
+        ((ConfigSerializer) from).deserialize(configDefinition, inputStream, valueContainer);
+        ((ConfigSerializer) to).serialize(configDefinition, outputStream, valueContainer, v -> true, false);
+    }
+}
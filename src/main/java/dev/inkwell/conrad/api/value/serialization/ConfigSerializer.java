@@ -23,6 +23,8 @@ import dev.inkwell.conrad.api.value.data.Constraint;
 import dev.inkwell.conrad.api.value.data.Flag;
 import dev.inkwell.conrad.api.value.util.Version;
 import dev.inkwell.conrad.impl.exceptions.ConfigSerializationException;
+import dev.inkwell.conrad.impl.storage.AtomicFiles;
+import dev.inkwell.conrad.impl.storage.BackupStore;
 import net.fabricmc.loader.api.VersionParsingException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -52,6 +54,9 @@ public interface ConfigSerializer<R> {
      * Uses the list of config values defined in the config definition and their associated values stored in the value
      * container to save a copy of the config file to disk. See {@link ConfigSerializer#getPath}.
      * <p>
+     * The file is written to a temporary file first and then moved into place, so a crash mid-write never truncates
+     * an existing config file.
+     * <p>
      * Note that if an IOException is thrown, the game will crash, as this is considered a critical failure.
      *
      * @param configDefinition an intermediate representation for a config file
@@ -61,11 +66,7 @@ public interface ConfigSerializer<R> {
     default void serialize(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) throws IOException {
         Path path = this.getPath(configDefinition, valueContainer);
 
-        if (!Files.exists(path.getParent())) {
-            Files.createDirectories(path.getParent());
-        }
-
-        this.serialize(configDefinition, Files.newOutputStream(path), valueContainer, v -> true, false);
+        AtomicFiles.write(path, outputStream -> this.serialize(configDefinition, outputStream, valueContainer, v -> true, false));
     }
 
     /**
@@ -90,7 +91,8 @@ public interface ConfigSerializer<R> {
      * - If a file cannot be opened, return 'true' to create a backup
      * - If a value cannot be parsed, ignore it, and return 'true' to create a backup
      * <p>
-     * Note that only one backup will be made for any given config version.
+     * Note that only one backup will be made for any given config version. Backups are kept in the config directory's
+     * backup store, see {@link BackupStore}.
      * <p>
      * If an IOException is thrown, the config file will be backed up and replaced with the default config file.
      *
@@ -125,9 +127,12 @@ public interface ConfigSerializer<R> {
             int c;
 
             boolean deserialize = true;
+            R representation = null;
 
             if (version == null || (c = version.compareTo(configDefinition.getVersion())) < 0) {
-                deserialize = configDefinition.upgrade(version, this.getRepresentation(Files.newInputStream(path)));
+                BackupStore.backup(configDefinition, valueContainer, "upgrade");
+                representation = this.getRepresentation(Files.newInputStream(path));
+                deserialize = configDefinition.upgrade(version, representation);
             } else if (c > 0) {
                 throw new ConfigSerializationException("Attempted to load newer config file: '" +
                         configDefinition.getVersion().toString() + "' expected, found '" +
@@ -135,7 +140,8 @@ public interface ConfigSerializer<R> {
                 );
             }
 
-            if (deserialize) {
+            // Prefer the upgraded representation, so that changes made by upgrade handlers are kept
+            if (deserialize && (representation == null || !this.deserializeRepresentation(configDefinition, representation, valueContainer))) {
                 this.deserialize(configDefinition, Files.newInputStream(path), valueContainer);
             }
         }
@@ -153,6 +159,22 @@ public interface ConfigSerializer<R> {
      */
     void deserialize(ConfigDefinition<R> configDefinition, InputStream inputStream, ValueContainer valueContainer) throws IOException;
 
+    /**
+     * Loads config values into a value container from an intermediate representation, such as one that was just
+     * upgraded. See {@link #getRepresentation}.
+     * <p>
+     * Serializers that can't load values from their representation return false, in which case the config file is
+     * read again instead.
+     *
+     * @param configDefinition an intermediate representation for a config file
+     * @param representation   the representation to read values from
+     * @param valueContainer   the container holding values of {@param configDefinition}
+     * @return whether or not values were loaded from the representation
+     */
+    default boolean deserializeRepresentation(ConfigDefinition<R> configDefinition, R representation, ValueContainer valueContainer) {
+        return false;
+    }
+
     /**
      * @return the file extension of this serializer, e.g. 'json', 'yaml', 'properties', etc.
      */
@@ -25,7 +25,11 @@ import dev.inkwell.conrad.api.value.data.DataType;
 import dev.inkwell.conrad.api.value.util.Array;
 import dev.inkwell.conrad.api.value.util.Table;
 import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.data.DataClassAccessor;
+import dev.inkwell.conrad.impl.util.OwenEntryReader;
+import dev.inkwell.conrad.impl.util.Parallel;
 import dev.inkwell.conrad.impl.util.ReflectionUtil;
+import dev.inkwell.conrad.impl.util.TextStreams;
 import dev.inkwell.owen.Owen;
 import dev.inkwell.owen.OwenElement;
 import net.fabricmc.loader.api.VersionParsingException;
@@ -36,15 +40,22 @@ import java.io.*;
 import java.lang.reflect.Field;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Serializes configs in a flat structure, versus {@link OwenTreeSerializer}'s JSON-like structure.
+ * <p>
+ * Files are read and written one top-level entry at a time, see {@link OwenEntryReader}, and each entry is bound
+ * straight to its value key. The whole document is only parsed into one tree for upgrading old config files, see
+ * {@link #getRepresentation(InputStream)}.
  */
 public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
     public static final FlatOwenSerializer INSTANCE = new FlatOwenSerializer(new Owen.Builder());
@@ -57,8 +68,9 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
     };
     private final Map<Class<?>, ValueSerializer<?>> serializableTypes = new HashMap<>();
     private final Map<Class<?>, Function> serializersRequiringDefaults = new HashMap<>();
-    private final Map<Class<?>, EnumSerializer<?>> enumSerializerCache = new HashMap<>();
-    private final Map<Class<?>, DataClassSerializer<?>> dataClassSerializerCache = new HashMap<>();
+    private final Map<Class<?>, EnumSerializer<?>> enumSerializerCache = new ConcurrentHashMap<>();
+    private final Map<Class<?>, DataClassSerializer<?>> dataClassSerializerCache = new ConcurrentHashMap<>();
+    private final Map<ConfigDefinition<?>, Plan> plans = new ConcurrentHashMap<>();
 
     private final Owen owen;
 
@@ -66,12 +78,12 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
     public FlatOwenSerializer(Owen.Builder builder) {
         this.owen = builder.build();
 
-        this.addSerializer(Boolean.class, new SimpleSerializer<>(Object::toString, Boolean::parseBoolean));
-        this.addSerializer(Integer.class, new SimpleSerializer<>(Object::toString, Integer::parseInt));
-        this.addSerializer(Long.class, new SimpleSerializer<>(Object::toString, Long::parseLong));
-        this.addSerializer(String.class, new SimpleSerializer<>(Object::toString, s -> s));
-        this.addSerializer(Float.class, new SimpleSerializer<>(Object::toString, Float::parseFloat));
-        this.addSerializer(Double.class, new SimpleSerializer<>(Object::toString, Double::parseDouble));
+        this.addSerializer(Boolean.class, new SimpleSerializer<>(Object::toString, Boolean::parseBoolean, true));
+        this.addSerializer(Integer.class, new SimpleSerializer<>(Object::toString, Integer::parseInt, true));
+        this.addSerializer(Long.class, new SimpleSerializer<>(Object::toString, Long::parseLong, true));
+        this.addSerializer(String.class, new SimpleSerializer<>(Object::toString, s -> s, true));
+        this.addSerializer(Float.class, new SimpleSerializer<>(Object::toString, Float::parseFloat, true));
+        this.addSerializer(Double.class, new SimpleSerializer<>(Object::toString, Double::parseDouble, true));
 
         this.addSerializer(Array.class, t -> new ArraySerializer<>(t));
         this.addSerializer(Table.class, t -> new TableSerializer<>(t));
@@ -134,54 +146,104 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
 
     @Override
     public void serialize(ConfigDefinition<OwenElement> configDefinition, OutputStream outputStream, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate, boolean minimal) throws IOException {
-        OwenElement root = Owen.empty();
+        Plan plan = this.getPlan(configDefinition);
 
-        if (!minimal) {
-            configDefinition.getData(DataType.COMMENT).forEach(root::addComment);
-        }
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+            OwenElement header = Owen.empty();
 
-        root.put("version", configDefinition.getVersion().toString());
+            if (!minimal) {
+                configDefinition.getData(DataType.COMMENT).forEach(header::addComment);
+            }
 
-        for (ValueKey<?> valueKey : configDefinition) {
-            if (valuePredicate.test(valueKey)) {
-                OwenElement element = get(valueContainer, valueKey);
+            header.put("version", configDefinition.getVersion().toString());
+            this.write(header, writer);
 
-                if (!minimal) {
-                    valueKey.getData(DataType.COMMENT).forEach(element::addComment);
-                }
+            for (int i = 0; i < plan.keys.length; ++i) {
+                ValueKey<?> valueKey = plan.keys[i];
 
-                root.put(valueKey.toString(), element);
-            }
-        }
+                if (valuePredicate.test(valueKey)) {
+                    OwenElement element = plan.serializers[i].serializeValue(valueContainer.get(valueKey));
+
+                    if (!minimal) {
+                        valueKey.getData(DataType.COMMENT).forEach(element::addComment);
+                    }
 
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream))) {
-            writer.write(this.owen.toString(root));
+                    // Each entry is printed as a document of its own, which is what a flat document is made of
+                    OwenElement entry = Owen.empty();
+                    entry.put(valueKey.toString(), element);
+                    this.write(entry, writer);
+                }
+            }
         }
     }
 
-    private <T> OwenElement get(ValueContainer valueContainer, ValueKey<T> valueKey) {
-        ValueSerializer<T> serializer = this.getSerializer(valueKey);
-        return serializer.serialize(valueContainer.get(valueKey));
+    private void write(OwenElement entry, Writer writer) throws IOException {
+        String text = this.owen.toString(entry);
+
+        writer.write(text);
+
+        if (!text.endsWith("\n")) {
+            writer.write('\n');
+        }
     }
 
     @Override
     public void deserialize(ConfigDefinition<OwenElement> configDefinition, InputStream inputStream, ValueContainer valueContainer) throws IOException {
-        OwenElement root = this.getRepresentation(inputStream);
+        Plan plan = this.getPlan(configDefinition);
 
-        for (ValueKey<?> valueKey : configDefinition) {
-            put(valueKey, root, valueContainer);
+        try (OwenEntryReader reader = new OwenEntryReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            OwenElement entry;
+
+            while ((entry = reader.next()) != null) {
+                this.bind(plan, entry, valueContainer);
+            }
         }
     }
 
-    private <T> void put(ValueKey<T> valueKey, OwenElement root, ValueContainer valueContainer) {
-        ValueSerializer<T> serializer = this.getSerializer(valueKey);
-        OwenElement element = root.get(valueKey.toString());
+    @Override
+    public boolean deserializeRepresentation(ConfigDefinition<OwenElement> configDefinition, OwenElement root, ValueContainer valueContainer) {
+        this.bind(this.getPlan(configDefinition), root, valueContainer);
+
+        return true;
+    }
 
-        if (element != null) {
-            valueKey.setValue(serializer.deserialize(element), valueContainer);
+    private void bind(Plan plan, OwenElement entries, ValueContainer valueContainer) {
+        // The layout is flat, so each top-level entry maps straight to a value key
+        for (Map.Entry<String, OwenElement> entry : entries.asMap().entrySet()) {
+            Integer i = plan.indices.get(entry.getKey());
+
+            if (i != null) {
+                this.put(plan, i, entry.getValue(), valueContainer);
+            }
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private <T> void put(Plan plan, int i, OwenElement element, ValueContainer valueContainer) {
+        ValueKey<T> valueKey = (ValueKey<T>) plan.keys[i];
+        ValueSerializer<T> serializer = (ValueSerializer<T>) plan.serializers[i];
+
+        valueKey.setValue(serializer.deserialize(element), valueContainer);
+    }
+
+    private Plan getPlan(ConfigDefinition<?> configDefinition) {
+        return this.plans.computeIfAbsent(configDefinition, definition -> {
+            List<ValueKey<?>> keys = new ArrayList<>();
+
+            for (ValueKey<?> valueKey : definition) {
+                keys.add(valueKey);
+            }
+
+            ValueSerializer<?>[] serializers = new ValueSerializer[keys.size()];
+
+            for (int i = 0; i < serializers.length; ++i) {
+                serializers[i] = this.getSerializer(keys.get(i));
+            }
+
+            return new Plan(keys.toArray(new ValueKey<?>[0]), serializers);
+        });
+    }
+
     @Override
     public @NotNull String getExtension() {
         return "owen";
@@ -189,13 +251,25 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
 
     @Override
     public @Nullable Version getVersion(InputStream inputStream) throws VersionParsingException, IOException {
-        return Version.parse(this.getRepresentation(inputStream).get("version").asString());
+        // The version is written first, so there is no need to read any further than it
+        try (OwenEntryReader reader = new OwenEntryReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            OwenElement entry;
+
+            while ((entry = reader.next()) != null) {
+                OwenElement version = entry.get("version");
+
+                if (version != null) {
+                    return Version.parse(version.asString());
+                }
+            }
+        }
+
+        return null;
     }
 
     @Override
     public @NotNull OwenElement getRepresentation(InputStream inputStream) throws IOException {
-        String text = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines()
-                .collect(Collectors.joining("\n"));
+        String text = TextStreams.readNormalized(inputStream);
 
         try {
             return Owen.parse(text);
@@ -212,16 +286,60 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
     public interface ValueSerializer<V> {
         OwenElement serialize(V value);
 
+        @SuppressWarnings("unchecked")
+        default OwenElement serializeValue(Object value) {
+            return this.serialize((V) value);
+        }
+
         V deserialize(OwenElement representation);
+
+        /**
+         * Elements of very large arrays and tables are only processed on several threads at once if their serializer
+         * opts in here, see {@link Parallel}. Other serializers are only ever called from one thread at a time.
+         *
+         * @return whether or not this serializer can be called from several threads at once
+         */
+        default boolean isThreadSafe() {
+            return false;
+        }
+    }
+
+    /**
+     * The value serializer of each key of a config definition, resolved once and aligned to definition order.
+     */
+    private static final class Plan {
+        private final ValueKey<?>[] keys;
+        private final ValueSerializer<?>[] serializers;
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        private Plan(ValueKey<?>[] keys, ValueSerializer<?>[] serializers) {
+            this.keys = keys;
+            this.serializers = serializers;
+
+            for (int i = 0; i < keys.length; ++i) {
+                this.indices.put(keys[i].toString(), i);
+            }
+        }
     }
 
     public static class SimpleSerializer<V> implements ValueSerializer<V> {
         private final Function<V, String> serializer;
         private final Function<String, V> deserializer;
+        private final boolean threadSafe;
 
         public SimpleSerializer(Function<V, String> serializer, Function<String, V> deserializer) {
+            this(serializer, deserializer, false);
+        }
+
+        private SimpleSerializer(Function<V, String> serializer, Function<String, V> deserializer, boolean threadSafe) {
             this.serializer = serializer;
             this.deserializer = deserializer;
+            this.threadSafe = threadSafe;
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return this.threadSafe;
         }
 
         @Override
@@ -245,6 +363,11 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
             this.values = (T[]) enumClass.getEnumConstants();
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return true;
+        }
+
         @Override
         public OwenElement serialize(T value) {
             return Owen.literal(((Enum<?>) value).name());
@@ -269,13 +392,18 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
             this.defaultValue = defaultValue;
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return FlatOwenSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get()).isThreadSafe();
+        }
+
         @Override
         public OwenElement serialize(Array<T> value) {
             OwenElement array = Owen.empty();
             ValueSerializer<T> serializer = FlatOwenSerializer.this.getSerializer(value.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            for (T t : value) {
-                array.add(serializer.serialize(t));
+            for (OwenElement element : Parallel.map(value.asList(), new OwenElement[value.size()], serializer::serialize, serializer.isThreadSafe())) {
+                array.add(element);
             }
 
             return array;
@@ -285,16 +413,10 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
         public Array<T> deserialize(OwenElement representation) {
             ValueSerializer<T> serializer = FlatOwenSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            //noinspection unchecked
-            T[] values = (T[]) java.lang.reflect.Array.newInstance(defaultValue.getValueClass(), representation == null ? 0 : representation.asList().size());
+            List<OwenElement> elements = representation == null ? Collections.emptyList() : representation.asList();
 
-            int i = 0;
-
-            if (representation != null) {
-                for (OwenElement element : representation.asList()) {
-                    values[i++] = serializer.deserialize(element);
-                }
-            }
+            //noinspection unchecked
+            T[] values = Parallel.map(elements, (T[]) java.lang.reflect.Array.newInstance(defaultValue.getValueClass(), elements.size()), serializer::deserialize, serializer.isThreadSafe());
 
             return new Array<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
         }
@@ -307,13 +429,22 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
             this.defaultValue = defaultValue;
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return FlatOwenSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get()).isThreadSafe();
+        }
+
         @Override
         public OwenElement serialize(Table<T> table) {
             OwenElement object = Owen.empty();
             ValueSerializer<T> serializer = FlatOwenSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
+            OwenElement[] elements = Parallel.map(table.asList(), new OwenElement[table.size()], t -> serializer.serialize(t.getValue()), serializer.isThreadSafe());
+
+            int i = 0;
+
             for (Table.Entry<String, T> t : table) {
-                object.put(t.getKey(), serializer.serialize(t.getValue()));
+                object.put(t.getKey(), elements[i++]);
             }
 
             return object;
@@ -323,69 +454,61 @@ public class FlatOwenSerializer implements ConfigSerializer<OwenElement> {
         public Table<T> deserialize(OwenElement representation) {
             ValueSerializer<T> serializer = FlatOwenSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            //noinspection unchecked
-            Table.Entry<String, T>[] values = (Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, representation == null ? 0 : representation.asMap().size());
-
-            int i = 0;
+            List<Map.Entry<String, OwenElement>> entries = representation == null ? Collections.emptyList() : new ArrayList<>(representation.asMap().entrySet());
 
-            if (representation != null) {
-                for (Map.Entry<String, OwenElement> entry : representation.asMap().entrySet()) {
-                    values[i++] = new Table.Entry<>(entry.getKey(), serializer.deserialize(entry.getValue()));
-                }
-            }
+            //noinspection unchecked
+            Table.Entry<String, T>[] values = Parallel.map(entries, (Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, entries.size()),
+                    entry -> new Table.Entry<>(entry.getKey(), serializer.deserialize(entry.getValue())), serializer.isThreadSafe());
 
             return new Table<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
         }
     }
 
     private class DataClassSerializer<T> implements ValueSerializer<T> {
-        private final Class<T> valueClass;
+        private final DataClassAccessor<T> accessor;
 
         private DataClassSerializer(Class<T> valueClass) {
-            this.valueClass = valueClass;
+            this.accessor = DataClassAccessor.of(valueClass);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            // Properties may be of any type, including ones whose serializers aren't
+            return false;
         }
 
         @Override
         public OwenElement serialize(T value) {
             OwenElement element = Owen.empty();
 
-            for (Field field : this.valueClass.getDeclaredFields()) {
-                element.put(field.getName(), this.serialize(field, value, field.getType()));
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                element.put(property.getName(), this.serialize(property, value, property.getType()));
             }
 
             return element;
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public T deserialize(OwenElement representation) {
-            try {
-                T value = this.valueClass.newInstance();
+            T value = this.accessor.newInstance();
+            OwenElement from = representation;
 
-                for (Field field : this.valueClass.getDeclaredFields()) {
-                    field.setAccessible(true);
-                    field.set(value, this.deserialize(field, representation, (Class<T>) field.getType(), (T) field.get(value)));
-                }
-
-                return value;
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new RuntimeException(e);
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                property.set(value, this.deserialize(property, from, property.getType(), property.get(value)));
             }
+
+            return value;
         }
 
         @SuppressWarnings("unchecked")
-        private <D> OwenElement serialize(Field field, T value, Class<D> clazz) {
-            try {
-                field.setAccessible(true);
-                D d = (D) field.get(value);
-                return FlatOwenSerializer.this.getSerializer(clazz, d).serialize(d);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+        private <D> OwenElement serialize(DataClassAccessor.Property property, T value, Class<D> clazz) {
+            D d = (D) property.get(value);
+            return FlatOwenSerializer.this.getSerializer(clazz, d).serialize(d);
         }
 
-        private <D> D deserialize(Field field, OwenElement from, Class<D> clazz, D defaultValue) {
-            return FlatOwenSerializer.this.getSerializer(clazz, defaultValue).deserialize(from.get(field.getName()));
+        @SuppressWarnings("unchecked")
+        private <D> D deserialize(DataClassAccessor.Property property, OwenElement from, Class<D> clazz, Object defaultValue) {
+            return FlatOwenSerializer.this.getSerializer(clazz, (D) defaultValue).deserialize(from.get(property.getName()));
         }
     }
 }
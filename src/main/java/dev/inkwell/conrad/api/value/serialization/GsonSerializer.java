@@ -20,12 +20,15 @@ import com.google.gson.*;
 import dev.inkwell.conrad.api.value.util.Array;
 import dev.inkwell.conrad.api.value.util.Table;
 import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.data.DataClassAccessor;
+import dev.inkwell.conrad.impl.util.Parallel;
 import net.fabricmc.loader.api.VersionParsingException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObject> {
@@ -49,6 +52,10 @@ public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObje
         this.addSerializer(Table.class, t -> new TableSerializer<>(t));
     }
 
+    protected Gson getGson() {
+        return this.gson;
+    }
+
     @Override
     public @NotNull String getExtension() {
         return "json";
@@ -104,6 +111,11 @@ public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObje
     }
 
     interface GsonValueSerializer<R extends JsonElement, V> extends ValueSerializer<JsonElement, R, V> {
+        // Our own serializers don't hold any state
+        @Override
+        default boolean isThreadSafe() {
+            return true;
+        }
     }
 
     private static class BooleanSerializer implements GsonValueSerializer<JsonPrimitive, Boolean> {
@@ -224,13 +236,18 @@ public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObje
             this.defaultValue = defaultValue;
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return GsonSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get()).isThreadSafe();
+        }
+
         @Override
         public JsonArray serialize(Array<T> value) {
             JsonArray array = new JsonArray();
             ValueSerializer<JsonElement, ?, T> serializer = GsonSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            for (T t : value) {
-                array.add(serializer.serialize(t));
+            for (JsonElement element : Parallel.map(value.asList(), new JsonElement[value.size()], serializer::serialize, serializer.isThreadSafe())) {
+                array.add(element);
             }
 
             return array;
@@ -241,15 +258,11 @@ public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObje
             ValueSerializer<JsonElement, ?, T> serializer = GsonSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
             JsonArray array = (JsonArray) representation;
+            List<JsonElement> elements = new ArrayList<>(array.size());
+            array.forEach(elements::add);
 
             //noinspection unchecked
-            T[] values = (T[]) java.lang.reflect.Array.newInstance(defaultValue.getValueClass(), array.size());
-
-            int i = 0;
-
-            for (JsonElement element : array) {
-                values[i++] = serializer.deserialize(element);
-            }
+            T[] values = Parallel.map(elements, (T[]) java.lang.reflect.Array.newInstance(defaultValue.getValueClass(), array.size()), serializer::deserialize, serializer.isThreadSafe());
 
             return new Array<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
         }
@@ -262,13 +275,22 @@ public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObje
             this.defaultValue = defaultValue;
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return GsonSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get()).isThreadSafe();
+        }
+
         @Override
         public JsonObject serialize(Table<T> table) {
             JsonObject object = new JsonObject();
             ValueSerializer<JsonElement, ?, T> serializer = GsonSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
+            JsonElement[] elements = Parallel.map(table.asList(), new JsonElement[table.size()], t -> serializer.serialize(t.getValue()), serializer.isThreadSafe());
+
+            int i = 0;
+
             for (Table.Entry<String, T> t : table) {
-                object.add(t.getKey(), serializer.serialize(t.getValue()));
+                object.add(t.getKey(), elements[i++]);
             }
 
             return object;
@@ -279,68 +301,61 @@ public class GsonSerializer extends AbstractTreeSerializer<JsonElement, JsonObje
             ValueSerializer<JsonElement, ?, T> serializer = GsonSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
             JsonObject object = (JsonObject) representation;
+            List<Map.Entry<String, JsonElement>> entries = new ArrayList<>(object.entrySet());
 
             //noinspection unchecked
-            Table.Entry<String, T>[] values = (Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, object.size());
-
-            int i = 0;
-
-            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
-                values[i++] = new Table.Entry<>(entry.getKey(), serializer.deserialize(entry.getValue()));
-            }
+            Table.Entry<String, T>[] values = Parallel.map(entries, (Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, entries.size()),
+                    entry -> new Table.Entry<>(entry.getKey(), serializer.deserialize(entry.getValue())), serializer.isThreadSafe());
 
             return new Table<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
         }
     }
 
     private class DataClassSerializer<T> implements GsonValueSerializer<JsonObject, T> {
-        private final Class<T> valueClass;
+        private final DataClassAccessor<T> accessor;
 
         private DataClassSerializer(Class<T> valueClass) {
-            this.valueClass = valueClass;
+            this.accessor = DataClassAccessor.of(valueClass);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            // Properties may be of any type, including ones whose serializers aren't
+            return false;
         }
 
         @Override
         public JsonObject serialize(T value) {
-            JsonObject object = new JsonObject();
+            JsonObject element = new JsonObject();
 
-            for (Field field : this.valueClass.getDeclaredFields()) {
-                object.add(field.getName(), this.serialize(field, value, field.getType()));
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                element.add(property.getName(), this.serialize(property, value, property.getType()));
             }
 
-            return object;
+            return element;
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public T deserialize(JsonElement representation) {
-            try {
-                T value = this.valueClass.newInstance();
-
-                for (Field field : this.valueClass.getDeclaredFields()) {
-                    field.setAccessible(true);
-                    field.set(value, this.deserialize(field, representation.getAsJsonObject(), (Class<T>) field.getType(), (T) field.get(value)));
-                }
+            T value = this.accessor.newInstance();
+            JsonObject from = representation.getAsJsonObject();
 
-                return value;
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new RuntimeException(e);
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                property.set(value, this.deserialize(property, from, property.getType(), property.get(value)));
             }
+
+            return value;
         }
 
         @SuppressWarnings("unchecked")
-        private <D> JsonElement serialize(Field field, T value, Class<D> clazz) {
-            try {
-                field.setAccessible(true);
-                D d = (D) field.get(value);
-                return GsonSerializer.this.getSerializer(clazz, d).serialize(d);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+        private <D> JsonElement serialize(DataClassAccessor.Property property, T value, Class<D> clazz) {
+            D d = (D) property.get(value);
+            return GsonSerializer.this.getSerializer(clazz, d).serialize(d);
         }
 
-        private <D> D deserialize(Field field, JsonObject from, Class<D> clazz, D defaultValue) {
-            return GsonSerializer.this.getSerializer(clazz, defaultValue).deserialize(from.get(field.getName()));
+        @SuppressWarnings("unchecked")
+        private <D> D deserialize(DataClassAccessor.Property property, JsonObject from, Class<D> clazz, Object defaultValue) {
+            return GsonSerializer.this.getSerializer(clazz, (D) defaultValue).deserialize(from.get(property.getName()));
         }
     }
 }
@@ -20,6 +20,9 @@ import dev.inkwell.conrad.api.value.data.Constraint;
 import dev.inkwell.conrad.api.value.util.Array;
 import dev.inkwell.conrad.api.value.util.Table;
 import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.data.DataClassAccessor;
+import dev.inkwell.conrad.impl.util.Parallel;
+import dev.inkwell.conrad.impl.util.TextStreams;
 import dev.inkwell.owen.Owen;
 import dev.inkwell.owen.OwenElement;
 import net.fabricmc.loader.api.VersionParsingException;
@@ -27,12 +30,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.lang.reflect.Field;
-import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("unused")
 public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, OwenElement> {
@@ -107,8 +109,7 @@ public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, Owen
 
     @Override
     public @NotNull OwenElement getRepresentation(InputStream inputStream) throws IOException {
-        String text = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)).lines()
-                .collect(Collectors.joining("\n"));
+        String text = TextStreams.readNormalized(inputStream);
 
         try {
             return Owen.parse(text);
@@ -123,6 +124,11 @@ public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, Owen
     }
 
     interface OwenValueSerializer<V> extends ValueSerializer<OwenElement, OwenElement, V> {
+        // Our own serializers don't hold any state
+        @Override
+        default boolean isThreadSafe() {
+            return true;
+        }
     }
 
     private static class BooleanSerializer implements OwenValueSerializer<Boolean> {
@@ -243,13 +249,18 @@ public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, Owen
             this.defaultValue = defaultValue;
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return OwenTreeSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get()).isThreadSafe();
+        }
+
         @Override
         public OwenElement serialize(Array<T> value) {
             OwenElement array = Owen.empty();
             ValueSerializer<OwenElement, ?, T> serializer = OwenTreeSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            for (T t : value) {
-                array.add(serializer.serialize(t));
+            for (OwenElement element : Parallel.map(value.asList(), new OwenElement[value.size()], serializer::serialize, serializer.isThreadSafe())) {
+                array.add(element);
             }
 
             return array;
@@ -259,14 +270,10 @@ public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, Owen
         public Array<T> deserialize(OwenElement representation) {
             ValueSerializer<OwenElement, ?, T> serializer = OwenTreeSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            //noinspection unchecked
-            T[] values = (T[]) java.lang.reflect.Array.newInstance(defaultValue.getValueClass(), representation.asList().size());
-
-            int i = 0;
+            List<OwenElement> elements = representation.asList();
 
-            for (OwenElement element : representation.asList()) {
-                values[i++] = serializer.deserialize(element);
-            }
+            //noinspection unchecked
+            T[] values = Parallel.map(elements, (T[]) java.lang.reflect.Array.newInstance(defaultValue.getValueClass(), elements.size()), serializer::deserialize, serializer.isThreadSafe());
 
             return new Array<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
         }
@@ -279,13 +286,22 @@ public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, Owen
             this.defaultValue = defaultValue;
         }
 
+        @Override
+        public boolean isThreadSafe() {
+            return OwenTreeSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get()).isThreadSafe();
+        }
+
         @Override
         public OwenElement serialize(Table<T> table) {
             OwenElement object = Owen.empty();
             ValueSerializer<OwenElement, ?, T> serializer = OwenTreeSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
+            OwenElement[] elements = Parallel.map(table.asList(), new OwenElement[table.size()], t -> serializer.serialize(t.getValue()), serializer.isThreadSafe());
+
+            int i = 0;
+
             for (Table.Entry<String, T> t : table) {
-                object.put(t.getKey(), serializer.serialize(t.getValue()));
+                object.put(t.getKey(), elements[i++]);
             }
 
             return object;
@@ -295,67 +311,61 @@ public class OwenTreeSerializer extends AbstractTreeSerializer<OwenElement, Owen
         public Table<T> deserialize(OwenElement representation) {
             ValueSerializer<OwenElement, ?, T> serializer = OwenTreeSerializer.this.getSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
 
-            //noinspection unchecked
-            Table.Entry<String, T>[] values = (Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, representation.asMap().size());
-
-            int i = 0;
+            List<Map.Entry<String, OwenElement>> entries = new ArrayList<>(representation.asMap().entrySet());
 
-            for (Map.Entry<String, OwenElement> entry : representation.asMap().entrySet()) {
-                values[i++] = new Table.Entry<>(entry.getKey(), serializer.deserialize(entry.getValue()));
-            }
+            //noinspection unchecked
+            Table.Entry<String, T>[] values = Parallel.map(entries, (Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, entries.size()),
+                    entry -> new Table.Entry<>(entry.getKey(), serializer.deserialize(entry.getValue())), serializer.isThreadSafe());
 
             return new Table<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
         }
     }
 
     private class DataClassSerializer<T> implements OwenValueSerializer<T> {
-        private final Class<T> valueClass;
+        private final DataClassAccessor<T> accessor;
 
         private DataClassSerializer(Class<T> valueClass) {
-            this.valueClass = valueClass;
+            this.accessor = DataClassAccessor.of(valueClass);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            // Properties may be of any type, including ones whose serializers aren't
+            return false;
         }
 
         @Override
         public OwenElement serialize(T value) {
             OwenElement element = Owen.empty();
 
-            for (Field field : this.valueClass.getDeclaredFields()) {
-                element.put(field.getName(), this.serialize(field, value, field.getType()));
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                element.put(property.getName(), this.serialize(property, value, property.getType()));
             }
 
             return element;
         }
 
-        @SuppressWarnings("unchecked")
         @Override
         public T deserialize(OwenElement representation) {
-            try {
-                T value = this.valueClass.newInstance();
-
-                for (Field field : this.valueClass.getDeclaredFields()) {
-                    field.setAccessible(true);
-                    field.set(value, this.deserialize(field, representation, (Class<T>) field.getType(), (T) field.get(value)));
-                }
+            T value = this.accessor.newInstance();
+            OwenElement from = representation;
 
-                return value;
-            } catch (InstantiationException | IllegalAccessException e) {
-                throw new RuntimeException(e);
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                property.set(value, this.deserialize(property, from, property.getType(), property.get(value)));
             }
+
+            return value;
         }
 
         @SuppressWarnings("unchecked")
-        private <D> OwenElement serialize(Field field, T value, Class<D> clazz) {
-            try {
-                field.setAccessible(true);
-                D d = (D) field.get(value);
-                return OwenTreeSerializer.this.getSerializer(clazz, d).serialize(d);
-            } catch (IllegalAccessException e) {
-                throw new RuntimeException(e);
-            }
+        private <D> OwenElement serialize(DataClassAccessor.Property property, T value, Class<D> clazz) {
+            D d = (D) property.get(value);
+            return OwenTreeSerializer.this.getSerializer(clazz, d).serialize(d);
         }
 
-        private <D> D deserialize(Field field, OwenElement from, Class<D> clazz, D defaultValue) {
-            return OwenTreeSerializer.this.getSerializer(clazz, defaultValue).deserialize(from.get(field.getName()));
+        @SuppressWarnings("unchecked")
+        private <D> D deserialize(DataClassAccessor.Property property, OwenElement from, Class<D> clazz, Object defaultValue) {
+            return OwenTreeSerializer.this.getSerializer(clazz, (D) defaultValue).deserialize(from.get(property.getName()));
         }
     }
 }
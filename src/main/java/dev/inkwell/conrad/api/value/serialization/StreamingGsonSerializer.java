@@ -0,0 +1,489 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value.serialization;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.util.Array;
+import dev.inkwell.conrad.api.value.util.Table;
+import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.data.DataClassAccessor;
+import net.fabricmc.loader.api.VersionParsingException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * JSON serializer that writes values straight from a value container to a {@link JsonWriter}, and binds values to
+ * their keys as tokens are read from a {@link JsonReader}, without building a {@link com.google.gson.JsonObject} tree.
+ * <p>
+ * Produces the same files as {@link GsonSerializer}. The tree representation is still used for upgrading old config
+ * files, see {@link #getRepresentation(InputStream)}. Types this serializer doesn't know how to stream, such as ones
+ * registered by subclasses, fall back to their tree serializer for that single value.
+ */
+public class StreamingGsonSerializer extends GsonSerializer {
+    public static final StreamingGsonSerializer DEFAULT = new StreamingGsonSerializer(new GsonBuilder().setPrettyPrinting().create());
+
+    private static final Map<Class<?>, StreamSerializer<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        PRIMITIVES.put(Boolean.class, new StreamSerializer<Boolean>() {
+            @Override
+            public void write(JsonWriter writer, Boolean value) throws IOException {
+                writer.value(value);
+            }
+
+            @Override
+            public Boolean read(JsonReader reader) throws IOException {
+                return reader.peek() == JsonToken.STRING ? Boolean.parseBoolean(reader.nextString()) : reader.nextBoolean();
+            }
+        });
+
+        PRIMITIVES.put(Integer.class, new StreamSerializer<Integer>() {
+            @Override
+            public void write(JsonWriter writer, Integer value) throws IOException {
+                writer.value(value);
+            }
+
+            @Override
+            public Integer read(JsonReader reader) throws IOException {
+                return reader.nextInt();
+            }
+        });
+
+        PRIMITIVES.put(Long.class, new StreamSerializer<Long>() {
+            @Override
+            public void write(JsonWriter writer, Long value) throws IOException {
+                writer.value(value);
+            }
+
+            @Override
+            public Long read(JsonReader reader) throws IOException {
+                return reader.nextLong();
+            }
+        });
+
+        PRIMITIVES.put(String.class, new StreamSerializer<String>() {
+            @Override
+            public void write(JsonWriter writer, String value) throws IOException {
+                writer.value(value);
+            }
+
+            @Override
+            public String read(JsonReader reader) throws IOException {
+                return reader.nextString();
+            }
+        });
+
+        PRIMITIVES.put(Float.class, new StreamSerializer<Float>() {
+            @Override
+            public void write(JsonWriter writer, Float value) throws IOException {
+                writer.value(value);
+            }
+
+            @Override
+            public Float read(JsonReader reader) throws IOException {
+                return (float) reader.nextDouble();
+            }
+        });
+
+        PRIMITIVES.put(Double.class, new StreamSerializer<Double>() {
+            @Override
+            public void write(JsonWriter writer, Double value) throws IOException {
+                writer.value(value);
+            }
+
+            @Override
+            public Double read(JsonReader reader) throws IOException {
+                return reader.nextDouble();
+            }
+        });
+
+        // Fields of data classes use primitive types
+        PRIMITIVES.put(boolean.class, PRIMITIVES.get(Boolean.class));
+        PRIMITIVES.put(int.class, PRIMITIVES.get(Integer.class));
+        PRIMITIVES.put(long.class, PRIMITIVES.get(Long.class));
+        PRIMITIVES.put(float.class, PRIMITIVES.get(Float.class));
+        PRIMITIVES.put(double.class, PRIMITIVES.get(Double.class));
+    }
+
+    private final Map<ConfigDefinition<?>, Node> layouts = new ConcurrentHashMap<>();
+    private final Map<ValueKey<?>, StreamSerializer<?>> keySerializers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, StreamSerializer<?>> classSerializers = new ConcurrentHashMap<>();
+
+    public StreamingGsonSerializer(Gson gson) {
+        super(gson);
+    }
+
+    @Override
+    public void serialize(ConfigDefinition<JsonObject> configDefinition, OutputStream outputStream, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate, boolean minimal) throws IOException {
+        JsonWriter writer = this.getGson().newJsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream)));
+
+        // Matches the lenient writing Gson uses for trees, which allows NaN and infinite values
+        writer.setLenient(true);
+
+        if (minimal) {
+            writer.setIndent("");
+        }
+
+        writer.beginObject();
+        writer.name("version").value(configDefinition.getVersion().toString());
+        this.write(writer, this.getLayout(configDefinition), valueContainer, valuePredicate);
+        writer.endObject();
+
+        writer.flush();
+        writer.close();
+    }
+
+    @Override
+    public void deserialize(ConfigDefinition<JsonObject> configDefinition, InputStream inputStream, ValueContainer valueContainer) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream))) {
+            reader.setLenient(true);
+            reader.beginObject();
+            this.read(reader, this.getLayout(configDefinition), valueContainer);
+            reader.endObject();
+        }
+    }
+
+    @Override
+    public @Nullable Version getVersion(InputStream inputStream) throws IOException, VersionParsingException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream))) {
+            reader.setLenient(true);
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("version") && reader.peek() == JsonToken.STRING) {
+                    return Version.parse(reader.nextString());
+                }
+
+                reader.skipValue();
+            }
+        }
+
+        return null;
+    }
+
+    private Node getLayout(ConfigDefinition<?> configDefinition) {
+        return this.layouts.computeIfAbsent(configDefinition, definition -> {
+            Node root = new Node();
+
+            for (ValueKey<?> valueKey : definition) {
+                Node node = root;
+                String[] path = valueKey.getPath();
+
+                for (int i = 0; i < path.length - 1; ++i) {
+                    node = (Node) node.children.computeIfAbsent(path[i], p -> new Node());
+                }
+
+                node.children.put(path[path.length - 1], valueKey);
+            }
+
+            return root;
+        });
+    }
+
+    private void write(JsonWriter writer, Node node, ValueContainer valueContainer, Predicate<ValueKey<?>> valuePredicate) throws IOException {
+        for (Map.Entry<String, Object> entry : node.children.entrySet()) {
+            Object child = entry.getValue();
+
+            if (child instanceof ValueKey) {
+                ValueKey<?> valueKey = (ValueKey<?>) child;
+
+                if (valuePredicate.test(valueKey)) {
+                    writer.name(entry.getKey());
+                    this.write(writer, valueKey, valueContainer);
+                }
+            } else if (((Node) child).matches(valuePredicate)) {
+                writer.name(entry.getKey());
+                writer.beginObject();
+                this.write(writer, (Node) child, valueContainer, valuePredicate);
+                writer.endObject();
+            }
+        }
+    }
+
+    private <T> void write(JsonWriter writer, ValueKey<T> valueKey, ValueContainer valueContainer) throws IOException {
+        this.getStreamSerializer(valueKey).write(writer, valueContainer.get(valueKey));
+    }
+
+    private void read(JsonReader reader, Node node, ValueContainer valueContainer) throws IOException {
+        while (reader.hasNext()) {
+            Object child = node.children.get(reader.nextName());
+
+            if (child instanceof ValueKey) {
+                this.read(reader, (ValueKey<?>) child, valueContainer);
+            } else if (child instanceof Node && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                reader.beginObject();
+                this.read(reader, (Node) child, valueContainer);
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+    }
+
+    private <T> void read(JsonReader reader, ValueKey<T> valueKey, ValueContainer valueContainer) throws IOException {
+        valueKey.setValue(this.getStreamSerializer(valueKey).read(reader), valueContainer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> StreamSerializer<T> getStreamSerializer(ValueKey<T> valueKey) {
+        return (StreamSerializer<T>) this.keySerializers.computeIfAbsent(valueKey, key -> {
+            T defaultValue = valueKey.getDefaultValue();
+            return this.getStreamSerializer((Class<T>) defaultValue.getClass(), defaultValue);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> StreamSerializer<T> getStreamSerializer(Class<T> valueClass, T defaultValue) {
+        if (PRIMITIVES.containsKey(valueClass)) {
+            return (StreamSerializer<T>) PRIMITIVES.get(valueClass);
+        }
+
+        if (valueClass.isEnum()) {
+            return (StreamSerializer<T>) this.classSerializers.computeIfAbsent(valueClass, EnumSerializer::new);
+        }
+
+        if (valueClass == Array.class) {
+            return (StreamSerializer<T>) new ArraySerializer<>((Array<?>) defaultValue);
+        }
+
+        if (valueClass == Table.class) {
+            return (StreamSerializer<T>) new TableSerializer<>((Table<?>) defaultValue);
+        }
+
+        if (this.hasSerializer(valueClass)) {
+            return new TreeSerializer<>(this.getSerializer(valueClass, defaultValue));
+        }
+
+        return (StreamSerializer<T>) this.classSerializers.computeIfAbsent(valueClass, DataClassSerializer::new);
+    }
+
+    private interface StreamSerializer<V> {
+        void write(JsonWriter writer, V value) throws IOException;
+
+        V read(JsonReader reader) throws IOException;
+    }
+
+    private static final class Node {
+        private final Map<String, Object> children = new LinkedHashMap<>();
+
+        private boolean matches(Predicate<ValueKey<?>> valuePredicate) {
+            for (Object child : this.children.values()) {
+                if (child instanceof ValueKey ? valuePredicate.test((ValueKey<?>) child) : ((Node) child).matches(valuePredicate)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    private static class EnumSerializer<T> implements StreamSerializer<T> {
+        private final Class<T> enumClass;
+        private final T[] values;
+
+        @SuppressWarnings("unchecked")
+        private EnumSerializer(Class<?> enumClass) {
+            this.enumClass = (Class<T>) enumClass;
+            this.values = (T[]) enumClass.getEnumConstants();
+        }
+
+        @Override
+        public void write(JsonWriter writer, T value) throws IOException {
+            writer.value(((Enum<?>) value).name());
+        }
+
+        @Override
+        public T read(JsonReader reader) throws IOException {
+            String name = reader.nextString();
+
+            for (T value : this.values) {
+                if (((Enum<?>) value).name().equals(name)) {
+                    return value;
+                }
+            }
+
+            throw new UnsupportedOperationException("Invalid value '" + name + "' for enum '" + enumClass.getSimpleName());
+        }
+    }
+
+    private class TreeSerializer<T> implements StreamSerializer<T> {
+        private final ValueSerializer<JsonElement, ?, T> serializer;
+
+        private TreeSerializer(ValueSerializer<JsonElement, ?, T> serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public void write(JsonWriter writer, T value) {
+            StreamingGsonSerializer.this.getGson().toJson(this.serializer.serialize(value), writer);
+        }
+
+        @Override
+        public T read(JsonReader reader) {
+            return this.serializer.deserialize(new JsonParser().parse(reader));
+        }
+    }
+
+    private class ArraySerializer<T> implements StreamSerializer<Array<T>> {
+        private final Array<T> defaultValue;
+        private final StreamSerializer<T> serializer;
+
+        @SuppressWarnings("unchecked")
+        private ArraySerializer(Array<?> defaultValue) {
+            this.defaultValue = (Array<T>) defaultValue;
+            this.serializer = StreamingGsonSerializer.this.getStreamSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
+        }
+
+        @Override
+        public void write(JsonWriter writer, Array<T> value) throws IOException {
+            writer.beginArray();
+
+            for (T t : value) {
+                this.serializer.write(writer, t);
+            }
+
+            writer.endArray();
+        }
+
+        @Override
+        public Array<T> read(JsonReader reader) throws IOException {
+            List<T> list = new ArrayList<>();
+
+            reader.beginArray();
+
+            while (reader.hasNext()) {
+                list.add(this.serializer.read(reader));
+            }
+
+            reader.endArray();
+
+            //noinspection unchecked
+            T[] values = list.toArray((T[]) java.lang.reflect.Array.newInstance(this.defaultValue.getValueClass(), list.size()));
+
+            return new Array<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
+        }
+    }
+
+    private class TableSerializer<T> implements StreamSerializer<Table<T>> {
+        private final Table<T> defaultValue;
+        private final StreamSerializer<T> serializer;
+
+        @SuppressWarnings("unchecked")
+        private TableSerializer(Table<?> defaultValue) {
+            this.defaultValue = (Table<T>) defaultValue;
+            this.serializer = StreamingGsonSerializer.this.getStreamSerializer(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue().get());
+        }
+
+        @Override
+        public void write(JsonWriter writer, Table<T> table) throws IOException {
+            writer.beginObject();
+
+            for (Table.Entry<String, T> t : table) {
+                writer.name(t.getKey());
+                this.serializer.write(writer, t.getValue());
+            }
+
+            writer.endObject();
+        }
+
+        @Override
+        public Table<T> read(JsonReader reader) throws IOException {
+            List<Table.Entry<String, T>> list = new ArrayList<>();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                list.add(new Table.Entry<>(reader.nextName(), this.serializer.read(reader)));
+            }
+
+            reader.endObject();
+
+            //noinspection unchecked
+            Table.Entry<String, T>[] values = list.toArray((Table.Entry<String, T>[]) java.lang.reflect.Array.newInstance(Table.Entry.class, list.size()));
+
+            return new Table<>(this.defaultValue.getValueClass(), this.defaultValue.getDefaultValue(), values);
+        }
+    }
+
+    private class DataClassSerializer<T> implements StreamSerializer<T> {
+        private final DataClassAccessor<T> accessor;
+
+        @SuppressWarnings("unchecked")
+        private DataClassSerializer(Class<?> valueClass) {
+            this.accessor = DataClassAccessor.of((Class<T>) valueClass);
+        }
+
+        @Override
+        public void write(JsonWriter writer, T value) throws IOException {
+            writer.beginObject();
+
+            for (DataClassAccessor.Property property : this.accessor.getProperties()) {
+                writer.name(property.getName());
+                this.write(writer, property, value);
+            }
+
+            writer.endObject();
+        }
+
+        @SuppressWarnings("unchecked")
+        private <D> void write(JsonWriter writer, DataClassAccessor.Property property, T value) throws IOException {
+            D d = (D) property.get(value);
+            StreamingGsonSerializer.this.getStreamSerializer((Class<D>) property.getType(), d).write(writer, d);
+        }
+
+        @Override
+        public T read(JsonReader reader) throws IOException {
+            T value = this.accessor.newInstance();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                DataClassAccessor.Property property = this.accessor.getProperty(reader.nextName());
+
+                if (property == null) {
+                    reader.skipValue();
+                } else {
+                    this.read(reader, property, value);
+                }
+            }
+
+            reader.endObject();
+
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <D> void read(JsonReader reader, DataClassAccessor.Property property, T value) throws IOException {
+            D defaultValue = (D) property.get(value);
+            property.set(value, StreamingGsonSerializer.this.getStreamSerializer((Class<D>) property.getType(), defaultValue).read(reader));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.api.value.util;
+
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An upgrade handler made of ordered migration steps, each covering a range of versions.
+ * <p>
+ * Steps are applied one after another to the same representation, so a config file that is several versions behind
+ * is parsed once and brought up to date in a single pass. A step applies when the version the file has reached so far
+ * falls inside its range, after which the file is considered to be at the step's target version.
+ *
+ * <pre>{@code
+ * MigrationChain.<JsonElement>builder()
+ *         .step(new Version(1, 0, 0), json -> ...)                          // anything older than 1.0.0
+ *         .step(new Version(1, 0, 0), new Version(2, 0, 0), json -> ...)    // 1.x to 2.0.0
+ *         .build();
+ * }</pre>
+ */
+public final class MigrationChain<R> implements ConfigUpgradeHandler<R> {
+    private static final Version ZERO = new Version(0, 0, 0);
+
+    private final List<Step<R>> steps;
+    private final Path migrationCandidate;
+    private final ConfigUpgradeHandler<R> fallback;
+
+    private MigrationChain(List<Step<R>> steps, Path migrationCandidate, ConfigUpgradeHandler<R> fallback) {
+        this.steps = steps;
+        this.migrationCandidate = migrationCandidate;
+        this.fallback = fallback;
+    }
+
+    public static <R> Builder<R> builder() {
+        return new Builder<>();
+    }
+
+    @Override
+    public boolean upgrade(@Nullable Version from, R representation) {
+        Version current = from == null ? ZERO : from;
+
+        for (Step<R> step : this.steps) {
+            if (step.since.compareTo(current) <= 0 && current.compareTo(step.until) < 0) {
+                try {
+                    step.migration.migrate(representation);
+                } catch (RuntimeException e) {
+                    ConfigManagerImpl.LOGGER.error("Failed to migrate config from '{}' to '{}': {}", current, step.until, e.getMessage());
+                    return false;
+                }
+
+                current = step.until;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public @Nullable Path getMigrationCandidate() {
+        return this.migrationCandidate;
+    }
+
+    @Override
+    public boolean migrate(Path path) {
+        return this.fallback.migrate(path);
+    }
+
+    /**
+     * @return the version a file of the given version would have after applying this chain
+     */
+    public Version getTarget(@Nullable Version from) {
+        Version current = from == null ? ZERO : from;
+
+        for (Step<R> step : this.steps) {
+            if (step.since.compareTo(current) <= 0 && current.compareTo(step.until) < 0) {
+                current = step.until;
+            }
+        }
+
+        return current;
+    }
+
+    @FunctionalInterface
+    public interface Migration<R> {
+        /**
+         * Modifies a representation in place.
+         *
+         * @param representation the intermediate representation of the config file being upgraded
+         */
+        void migrate(R representation);
+    }
+
+    private static final class Step<R> {
+        private final Version since;
+        private final Version until;
+        private final Migration<R> migration;
+
+        private Step(Version since, Version until, Migration<R> migration) {
+            this.since = since;
+            this.until = until;
+            this.migration = migration;
+        }
+    }
+
+    public static final class Builder<R> {
+        private final List<Step<R>> steps = new ArrayList<>();
+        private Path migrationCandidate;
+        private ConfigUpgradeHandler<R> fallback = new ConfigUpgradeHandler<R>() {
+        };
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a step that upgrades any file older than the specified version.
+         *
+         * @param until     the version files are at after this step
+         * @param migration the migration to apply
+         * @return this builder
+         */
+        public Builder<R> step(@NotNull Version until, @NotNull Migration<R> migration) {
+            return this.step(ZERO, until, migration);
+        }
+
+        /**
+         * Adds a step that upgrades files of at least version {@param since} and older than {@param until}.
+         *
+         * @param since     the lowest version this step applies to
+         * @param until     the version files are at after this step
+         * @param migration the migration to apply
+         * @return this builder
+         */
+        public Builder<R> step(@NotNull Version since, @NotNull Version until, @NotNull Migration<R> migration) {
+            if (since.compareTo(until) >= 0) {
+                throw new IllegalArgumentException("Migration step must move forward: '" + since + "' to '" + until + "'");
+            }
+
+            this.steps.add(new Step<>(since, until, migration));
+
+            return this;
+        }
+
+        /**
+         * See {@link ConfigUpgradeHandler#getMigrationCandidate} and {@link ConfigUpgradeHandler#migrate}.
+         *
+         * @param path    a relative path to the config file this config replaces
+         * @param handler the handler to migrate that file with
+         * @return this builder
+         */
+        public Builder<R> replaces(@NotNull Path path, @NotNull ConfigUpgradeHandler<R> handler) {
+            this.migrationCandidate = path;
+            this.fallback = handler;
+
+            return this;
+        }
+
+        public MigrationChain<R> build() {
+            List<Step<R>> steps = new ArrayList<>(this.steps);
+            steps.sort(Comparator.comparing((Step<R> step) -> step.until).thenComparing(step -> step.since));
+
+            return new MigrationChain<>(Collections.unmodifiableList(steps), this.migrationCandidate, this.fallback);
+        }
+    }
+}
@@ -17,6 +17,8 @@
 package dev.inkwell.conrad.api.value.util;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Supplier;
 
 public abstract class StronglyTypedImmutableList<T, I> extends StronglyTypedImmutableCollection<Integer, T, I> {
@@ -42,4 +44,11 @@ public abstract class StronglyTypedImmutableList<T, I> extends StronglyTypedImmu
     public int size() {
         return this.values.length;
     }
+
+    /**
+     * @return a read-only list view of the values in this collection
+     */
+    public List<T> asList() {
+        return Collections.unmodifiableList(Arrays.asList(this.values));
+    }
 }
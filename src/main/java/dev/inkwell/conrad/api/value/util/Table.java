@@ -20,8 +20,10 @@ import org.jetbrains.annotations.NotNull;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -103,6 +105,13 @@ public class Table<T> extends StronglyTypedImmutableCollection<Integer, T, Table
         return Arrays.asList(this.values).iterator();
     }
 
+    /**
+     * @return a read-only list view of the entries in this table
+     */
+    public List<Entry<String, T>> asList() {
+        return Collections.unmodifiableList(Arrays.asList(this.values));
+    }
+
     @Override
     public Iterable<T> getValues() {
         return Arrays.stream(this.values).map(e -> e.value).collect(Collectors.toList());
@@ -19,10 +19,16 @@ package dev.inkwell.conrad.impl;
 import dev.inkwell.conrad.api.Config;
 import dev.inkwell.conrad.api.value.*;
 import dev.inkwell.conrad.api.value.data.DataType;
+import dev.inkwell.conrad.api.value.data.LoadType;
+import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.api.value.serialization.ConfigSerializer;
 import dev.inkwell.conrad.api.value.util.ListView;
 import dev.inkwell.conrad.impl.exceptions.ConfigSerializationException;
 import dev.inkwell.conrad.impl.gui.ConfigScreenProviderImpl;
+import dev.inkwell.conrad.impl.migration.BulkMigrator;
+import dev.inkwell.conrad.impl.storage.BackupStore;
+import dev.inkwell.conrad.impl.storage.ConfigJournal;
+import dev.inkwell.conrad.impl.storage.WriteBehindSaver;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.FabricLoader;
 import net.fabricmc.loader.api.entrypoint.EntrypointContainer;
@@ -98,14 +104,74 @@ public class ConfigManagerImpl implements PreLaunchEntrypoint {
         return configDefinition;
     }
 
+    public static boolean isSynced(ConfigDefinition<?> configDefinition) {
+        if (!configDefinition.getData(DataType.SYNC_TYPE).isEmpty()) {
+            return true;
+        }
+
+        for (ValueKey<?> valueKey : configDefinition) {
+            if (!valueKey.getData(DataType.SYNC_TYPE).isEmpty()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the load type explicitly requested by a config definition, or null if it should use the global default
+     */
+    private static @Nullable LoadType getLoadType(ConfigDefinition<?> configDefinition) {
+        // Synced configs need to be present before anybody connects, so we never defer them
+        if (isSynced(configDefinition)) {
+            return LoadType.EAGER;
+        }
+
+        for (LoadType loadType : configDefinition.getData(DataType.LOAD_TYPE)) {
+            return loadType;
+        }
+
+        return null;
+    }
+
+    private static boolean isLazy(ConfigDefinition<?> configDefinition) {
+        LoadType loadType = getLoadType(configDefinition);
+
+        return loadType == null
+                ? ConradConfig.Loading.LAZY.getValue()
+                : loadType == LoadType.LAZY;
+    }
+
     public static <R> void doSerialization(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
         if (!valueContainer.contains(configDefinition.getSaveType())) return;
 
+        if (isLazy(configDefinition)) {
+            valueContainer.defer(configDefinition);
+        } else {
+            load(configDefinition, valueContainer);
+        }
+    }
+
+    public static <R> void loadDeferred(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
+        long start = System.nanoTime();
+
+        load(configDefinition, valueContainer);
+
+        LOGGER.debug("Loaded deferred config '{}' on first access in {}ms", configDefinition, (System.nanoTime() - start) / 1000000F);
+    }
+
+    public static <R> void load(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
         ConfigSerializer<R> serializer = configDefinition.getSerializer();
 
         try {
             serializer.deserialize(configDefinition, valueContainer);
+
+            if (ConfigJournal.isJournaled(configDefinition)) {
+                ConfigJournal.replay(configDefinition, valueContainer);
+            }
         } catch (IOException e) {
+            BackupStore.backup(configDefinition, valueContainer, "failure");
+
             Path location = serializer.getPath(configDefinition, valueContainer);
             throw new ConfigSerializationException(String.format("Failed to deserialize config '%s': %s", location, e.getMessage()));
         }
@@ -115,19 +181,32 @@ public class ConfigManagerImpl implements PreLaunchEntrypoint {
 
     public static <R> void save(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
         if (configDefinition != null && valueContainer != null) {
+            valueContainer.ensureLoaded(configDefinition);
+
             ConfigSerializer<R> serializer = configDefinition.getSerializer();
 
             Path location = serializer.getPath(configDefinition, valueContainer);
 
             try {
                 Files.createDirectories(location.getParent());
-                serializer.serialize(configDefinition, valueContainer);
+
+                if (ConfigJournal.isJournaled(configDefinition)) {
+                    ConfigJournal.compact(configDefinition, valueContainer);
+                } else {
+                    serializer.serialize(configDefinition, valueContainer);
+                }
             } catch (IOException e) {
                 throw new ConfigSerializationException(String.format("Failed to serialize config '%s': %s", location, e.getMessage()));
             }
         }
     }
 
+    public static void saveAsync(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+        if (configDefinition != null && valueContainer != null) {
+            WriteBehindSaver.INSTANCE.enqueue(configDefinition, valueContainer);
+        }
+    }
+
     @Override
     public void onPreLaunch() {
         Map<String, Collection<ConfigInitializer<?>>> configInitializers = new HashMap<>();
@@ -169,10 +248,41 @@ public class ConfigManagerImpl implements PreLaunchEntrypoint {
 
         postInitializers.forEach(ConfigPostInitializer::onConfigsLoaded);
 
+        long start = System.nanoTime();
+        Collection<ConfigDefinition<?>> undecided = new ArrayList<>();
+
+        // Configs that explicitly request a load type go first, since the global default is itself a config value
         for (ConfigDefinition<?> configDefinition : CONFIG_DEFINITIONS.values()) {
+            if (getLoadType(configDefinition) == null) {
+                undecided.add(configDefinition);
+            } else {
+                doSerialization(configDefinition, ValueContainer.ROOT);
+            }
+        }
+
+        for (ConfigDefinition<?> configDefinition : undecided) {
             doSerialization(configDefinition, ValueContainer.ROOT);
         }
 
+        int loaded = 0, deferred = 0;
+
+        // LEVEL and USER configs are also read into the root container, but only as fallbacks for their own containers
+        for (ConfigDefinition<?> configDefinition : CONFIG_DEFINITIONS.values()) {
+            if (configDefinition.getSaveType() != SaveType.ROOT) continue;
+
+            if (ValueContainer.ROOT.isLoaded(configDefinition)) {
+                ++loaded;
+            } else {
+                ++deferred;
+            }
+        }
+
+        LOGGER.info("Loaded {} ROOT configs in {}ms, {} deferred until first access", loaded, (System.nanoTime() - start) / 1000000F, deferred);
+
+        BackupStore.startPeriodic();
+
         FINISHED = true;
+
+        BulkMigrator.runIfRequested();
     }
 }
@@ -41,7 +41,7 @@ public class Conrad implements ConfigPostInitializer {
         SyncConfigValues.sendConfigValues(config, valueContainer);
 
         if (valueContainer.getSaveDirectory() != null) {
-            ConfigManager.save(config, valueContainer);
+            ConfigManager.saveAsync(config, valueContainer);
         }
     }
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl;
+
+import dev.inkwell.conrad.api.Config;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.data.DataType;
+import dev.inkwell.conrad.api.value.data.LoadType;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.api.value.serialization.ConfigSerializer;
+import dev.inkwell.conrad.api.value.serialization.FlatOwenSerializer;
+import dev.inkwell.conrad.api.value.util.DataCollector;
+import dev.inkwell.conrad.impl.storage.FsyncPolicy;
+import dev.inkwell.owen.OwenElement;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Options controlling Conrad's own behavior. Always loaded eagerly, since other configs depend on it.
+ */
+public class ConradConfig extends Config<OwenElement> {
+    public static class Limits {
+        public static final ValueKey<Integer> PACKETS = builder(40).bounds(1, 10000).build();
+        public static final ValueKey<Integer> BYTES = builder(262144).bounds(1024, 67108864).build();
+        public static final ValueKey<Integer> KICK_THRESHOLD = builder(400).bounds(0, 1000000).build();
+    }
+
+    public static class Loading {
+        public static final ValueKey<Boolean> LAZY = value(false);
+    }
+
+    public static class Backups {
+        public static final ValueKey<Integer> INTERVAL = builder(60).bounds(0, 10080).build();
+        public static final ValueKey<Integer> MAX_COUNT = builder(20).bounds(1, 1000).build();
+        public static final ValueKey<Integer> MAX_AGE = builder(30).bounds(1, 3650).build();
+    }
+
+    public static class Journal {
+        public static final ValueKey<Integer> COMPACT_SIZE = builder(256).bounds(1, 65536).build();
+        public static final ValueKey<Integer> COMPACT_AGE = builder(600).bounds(1, 86400).build();
+    }
+
+    public static class Parallel {
+        public static final ValueKey<Integer> THRESHOLD = builder(4096).bounds(0, 1048576).build();
+    }
+
+    public static class Reloading {
+        public static final ValueKey<Boolean> WATCH = value(false);
+        public static final ValueKey<Integer> DEBOUNCE = builder(500).bounds(50, 10000).build();
+    }
+
+    public static class Saving {
+        public static final ValueKey<Integer> DELAY = builder(250).bounds(0, 60000).build();
+        public static final ValueKey<FsyncPolicy> FSYNC = value(() -> FsyncPolicy.FILE);
+    }
+
+    public static class Syncing {
+        public static final ValueKey<Integer> INTERVAL = builder(1).bounds(1, 200).build();
+    }
+
+    @Override
+    public @NotNull ConfigSerializer<OwenElement> getSerializer() {
+        return FlatOwenSerializer.INSTANCE;
+    }
+
+    @Override
+    public @NotNull SaveType getSaveType() {
+        return SaveType.ROOT;
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return "common";
+    }
+
+    @Override
+    public void addConfigData(@NotNull DataCollector collector) {
+        collector.add(DataType.LOAD_TYPE, LoadType.EAGER);
+    }
+}
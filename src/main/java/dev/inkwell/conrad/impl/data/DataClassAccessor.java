@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.data;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached access to the fields of data class values.
+ * <p>
+ * Field metadata is read once per class, and fields are read, written and instances created through method handles
+ * instead of reflection. Static and synthetic fields are not part of a data class.
+ *
+ * @param <T> the data class
+ */
+public final class DataClassAccessor<T> {
+    private static final Map<Class<?>, DataClassAccessor<?>> ACCESSORS = new ConcurrentHashMap<>();
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<T> dataClass;
+    private final MethodHandle constructor;
+    private final List<Property> properties;
+    private final Map<String, Property> propertiesByName = new HashMap<>();
+
+    private DataClassAccessor(Class<T> dataClass) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<Property> properties = new ArrayList<>();
+
+        this.dataClass = dataClass;
+
+        try {
+            Constructor<T> constructor = dataClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+
+            for (Field field : dataClass.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+
+                field.setAccessible(true);
+
+                Property property = new Property(field,
+                        lookup.unreflectGetter(field).asType(GETTER_TYPE),
+                        lookup.unreflectSetter(field).asType(SETTER_TYPE));
+
+                properties.add(property);
+                this.propertiesByName.put(property.getName(), property);
+            }
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("Cannot access data class '" + dataClass.getName() + "'", e);
+        }
+
+        this.properties = Collections.unmodifiableList(properties);
+    }
+
+    /**
+     * @param dataClass the data class in question
+     * @return the accessor for the data class, created if it does not yet exist
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DataClassAccessor<T> of(Class<T> dataClass) {
+        return (DataClassAccessor<T>) ACCESSORS.computeIfAbsent(dataClass, DataClassAccessor::new);
+    }
+
+    public Class<T> getDataClass() {
+        return this.dataClass;
+    }
+
+    /**
+     * @return the fields of the data class, in declaration order
+     */
+    public List<Property> getProperties() {
+        return this.properties;
+    }
+
+    public @Nullable Property getProperty(String name) {
+        return this.propertiesByName.get(name);
+    }
+
+    /**
+     * @return a new instance of the data class, created with its no-arg constructor
+     */
+    @SuppressWarnings("unchecked")
+    public T newInstance() {
+        try {
+            return (T) (Object) this.constructor.invokeExact();
+        } catch (Throwable throwable) {
+            throw new RuntimeException(throwable);
+        }
+    }
+
+    /**
+     * @param value    the value to copy
+     * @param property the property to change
+     * @param newValue the new value of the property
+     * @return a copy of the specified value, with one property changed
+     */
+    public T with(T value, Property property, Object newValue) {
+        T copy = this.newInstance();
+
+        for (Property p : this.properties) {
+            p.set(copy, p == property ? newValue : p.get(value));
+        }
+
+        return copy;
+    }
+
+    public static final class Property {
+        private final Field field;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Property(Field field, MethodHandle getter, MethodHandle setter) {
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        public String getName() {
+            return this.field.getName();
+        }
+
+        public Class<?> getType() {
+            return this.field.getType();
+        }
+
+        public Object get(Object instance) {
+            try {
+                return (Object) this.getter.invokeExact(instance);
+            } catch (Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+        }
+
+        public void set(Object instance, Object value) {
+            try {
+                this.setter.invokeExact(instance, value);
+            } catch (Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+        }
+    }
+}
@@ -26,6 +26,7 @@ import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.api.value.lang.Translator;
 import dev.inkwell.conrad.api.value.util.ListView;
 import dev.inkwell.conrad.impl.Conrad;
+import dev.inkwell.conrad.impl.util.CommentCache;
 import dev.inkwell.vivian.api.builders.CategoryBuilder;
 import dev.inkwell.vivian.api.builders.ConfigScreenBuilderImpl;
 import dev.inkwell.vivian.api.screen.ScreenStyle;
@@ -178,7 +179,7 @@ public final class ConfigScreenProviderImpl {
         ConfigDefinition<?> configDefinition = configValue.getConfig();
 
         List<Text> comments = new ArrayList<>();
-        ConfigManager.getComments(configValue).forEach(string -> comments.add(string.equals("") ? LiteralText.EMPTY : new LiteralText(string)));
+        CommentCache.get(configValue).forEach(string -> comments.add(string.equals("") ? LiteralText.EMPTY : new LiteralText(string)));
 
         category.add((parent, x, y, width, consumer) -> {
             int componentWidth = width / 2;
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.migration;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.api.value.serialization.ConfigSerializer;
+import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.VersionParsingException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Upgrades the LEVEL configs of many world directories at once, without loading the worlds.
+ * <p>
+ * Runs at the end of pre-launch when the {@code conrad.migrate} system property is set to one or more paths,
+ * separated by the platform path separator. Each path is either a world directory, recognized by its 'level.dat',
+ * or a directory whose immediate children are worlds, such as 'saves'. Worlds are migrated in parallel.
+ * <ul>
+ *     <li>{@code conrad.migrate.dryRun} reports what would be upgraded without writing anything</li>
+ *     <li>{@code conrad.migrate.exit} exits once migration is done, for headless use</li>
+ * </ul>
+ * A summary is logged and a per-file report is written to 'conrad-migration.txt' in the game directory.
+ */
+public final class BulkMigrator {
+    private static final String PATHS_PROPERTY = "conrad.migrate";
+    private static final String DRY_RUN_PROPERTY = "conrad.migrate.dryRun";
+    private static final String EXIT_PROPERTY = "conrad.migrate.exit";
+
+    private final List<Path> worlds;
+    private final boolean dryRun;
+
+    public BulkMigrator(List<Path> worlds, boolean dryRun) {
+        this.worlds = worlds;
+        this.dryRun = dryRun;
+    }
+
+    public static void runIfRequested() {
+        String paths = System.getProperty(PATHS_PROPERTY);
+
+        if (paths == null || paths.isEmpty()) return;
+
+        List<Path> worlds = new ArrayList<>();
+
+        for (String path : paths.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                findWorlds(Paths.get(path).toAbsolutePath().normalize(), worlds);
+            }
+        }
+
+        BulkMigrator migrator = new BulkMigrator(worlds, Boolean.getBoolean(DRY_RUN_PROPERTY));
+        List<Result> results = migrator.run();
+
+        migrator.report(results, FabricLoader.getInstance().getGameDir().resolve("conrad-migration.txt"));
+
+        if (Boolean.getBoolean(EXIT_PROPERTY)) {
+            boolean failed = results.stream().anyMatch(result -> result.outcome == Outcome.FAILED);
+            System.exit(failed ? 1 : 0);
+        }
+    }
+
+    private static void findWorlds(Path path, List<Path> worlds) {
+        if (Files.exists(path.resolve("level.dat"))) {
+            worlds.add(path);
+        } else if (Files.isDirectory(path)) {
+            try (Stream<Path> children = Files.list(path)) {
+                children.filter(child -> Files.exists(child.resolve("level.dat"))).sorted().forEach(worlds::add);
+            } catch (IOException e) {
+                ConfigManagerImpl.LOGGER.warn("Failed to list worlds in '{}': {}", path, e.getMessage());
+            }
+        } else {
+            ConfigManagerImpl.LOGGER.warn("Not a world or directory of worlds: '{}'", path);
+        }
+    }
+
+    /**
+     * Migrates every world, one task per world.
+     *
+     * @return the result for each existing LEVEL config file, in world order
+     */
+    public List<Result> run() {
+        List<ConfigDefinition<?>> definitions = new ArrayList<>();
+
+        for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
+            if (configDefinition.getSaveType() == SaveType.LEVEL) {
+                definitions.add(configDefinition);
+            }
+        }
+
+        ConfigManagerImpl.LOGGER.info("{} {} LEVEL configs in {} worlds", this.dryRun ? "Checking" : "Migrating", definitions.size(), this.worlds.size());
+
+        if (definitions.isEmpty() || this.worlds.isEmpty()) return Collections.emptyList();
+
+        long start = System.nanoTime();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.worlds.size(), Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "Conrad Migrator-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<List<Result>>> futures = new ArrayList<>();
+
+        for (Path world : this.worlds) {
+            futures.add(executor.submit(() -> this.migrate(world, definitions)));
+        }
+
+        List<Result> results = new ArrayList<>();
+
+        try {
+            for (Future<List<Result>> future : futures) {
+                results.addAll(future.get());
+            }
+        } catch (Exception e) {
+            ConfigManagerImpl.LOGGER.error("Config migration was interrupted: {}", e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+
+        for (Result result : results) {
+            counts.merge(result.outcome, 1, Integer::sum);
+        }
+
+        ConfigManagerImpl.LOGGER.info("Finished in {}ms: {}", (System.nanoTime() - start) / 1000000F, counts);
+
+        return results;
+    }
+
+    private List<Result> migrate(Path world, List<ConfigDefinition<?>> definitions) {
+        ValueContainer valueContainer = ValueContainer.detached(world.resolve("config"), SaveType.LEVEL);
+        List<Result> results = new ArrayList<>();
+
+        for (ConfigDefinition<?> configDefinition : definitions) {
+            Result result = this.migrate(world, configDefinition, valueContainer);
+
+            if (result != null) {
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+    private <R> Result migrate(Path world, ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
+        ConfigSerializer<R> serializer = configDefinition.getSerializer();
+        Path path = serializer.getPath(configDefinition, valueContainer);
+
+        if (!Files.exists(path)) return null;
+
+        Version version = null;
+
+        try {
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                version = serializer.getVersion(inputStream);
+            } catch (VersionParsingException e) {
+                // Treated like a file without a version, same as regular loading
+            }
+
+            int c = version == null ? -1 : version.compareTo(configDefinition.getVersion());
+
+            if (c == 0) {
+                return new Result(world, configDefinition, version, Outcome.UP_TO_DATE, null);
+            } else if (c > 0) {
+                return new Result(world, configDefinition, version, Outcome.NEWER, null);
+            }
+
+            if (this.dryRun) {
+                R representation;
+
+                try (InputStream inputStream = Files.newInputStream(path)) {
+                    representation = serializer.getRepresentation(inputStream);
+                }
+
+                if (configDefinition.upgrade(version, representation)) {
+                    serializer.deserializeRepresentation(configDefinition, representation, ValueContainer.detached(SaveType.LEVEL));
+                }
+
+                return new Result(world, configDefinition, version, Outcome.WOULD_UPGRADE, null);
+            }
+
+            // Backs up, upgrades, and writes the file back in its current version
+            ConfigManagerImpl.load(configDefinition, valueContainer);
+
+            return new Result(world, configDefinition, version, Outcome.UPGRADED, null);
+        } catch (IOException | RuntimeException e) {
+            ConfigManagerImpl.LOGGER.warn("Failed to migrate '{}' in '{}': {}", configDefinition, world, e.getMessage());
+            return new Result(world, configDefinition, version, Outcome.FAILED, e.getMessage());
+        }
+    }
+
+    private void report(List<Result> results, Path path) {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            writer.println(this.dryRun ? "# Dry run, nothing was written" : "# Migration");
+
+            for (Result result : results) {
+                writer.println(result);
+            }
+        } catch (IOException e) {
+            ConfigManagerImpl.LOGGER.warn("Failed to write migration report '{}': {}", path, e.getMessage());
+        }
+    }
+
+    public enum Outcome {
+        UP_TO_DATE,
+        UPGRADED,
+        WOULD_UPGRADE,
+        NEWER,
+        FAILED
+    }
+
+    public static final class Result {
+        public final Path world;
+        public final ConfigDefinition<?> configDefinition;
+        public final Version from;
+        public final Outcome outcome;
+        public final String message;
+
+        private Result(Path world, ConfigDefinition<?> configDefinition, Version from, Outcome outcome, String message) {
+            this.world = world;
+            this.configDefinition = configDefinition;
+            this.from = from;
+            this.outcome = outcome;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s\t%s\t%s -> %s\t%s%s", this.world, this.configDefinition, this.from,
+                    this.configDefinition.getVersion(), this.outcome, this.message == null ? "" : "\t" + this.message);
+        }
+    }
+}
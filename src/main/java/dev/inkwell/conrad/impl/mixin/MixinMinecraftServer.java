@@ -24,15 +24,11 @@ import dev.inkwell.conrad.api.value.ValueContainer;
 import dev.inkwell.conrad.api.value.ValueContainerProvider;
 import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.impl.ConfigManagerImpl;
-import dev.inkwell.conrad.impl.networking.channels.ForwardUserConfigsS2CChannel;
 import dev.inkwell.conrad.impl.networking.util.ConfigValueCache;
-import dev.inkwell.conrad.impl.networking.util.ConfigValueSender;
+import dev.inkwell.conrad.impl.networking.util.PeerSnapshot;
 import dev.inkwell.conrad.impl.util.ClientUtil;
 import net.fabricmc.api.EnvType;
-import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.fabricmc.loader.api.FabricLoader;
-import net.minecraft.network.PacketByteBuf;
 import net.minecraft.resource.ResourcePackManager;
 import net.minecraft.resource.ServerResourceManager;
 import net.minecraft.server.MinecraftServer;
@@ -59,13 +55,13 @@ import java.util.Map;
 import java.util.UUID;
 
 @Mixin(MinecraftServer.class)
-public abstract class MixinMinecraftServer implements ValueContainerProvider, ConfigValueCache, ConfigValueSender {
+public abstract class MixinMinecraftServer implements ValueContainerProvider, ConfigValueCache {
     @Unique
     private Map<UUID, ValueContainer> playerValueContainers;
     @Unique
     private ValueContainer valueContainer;
     @Unique
-    private Map<UUID, Map<String, PacketByteBuf>> cachedConfigPackets;
+    private PeerSnapshot peerSnapshot;
 
     @Shadow
     public abstract Path getSavePath(WorldSavePath worldSavePath);
@@ -74,7 +70,7 @@ public abstract class MixinMinecraftServer implements ValueContainerProvider, Co
     private void init(Thread thread, DynamicRegistryManager.Impl impl, LevelStorage.Session session, SaveProperties saveProperties, ResourcePackManager resourcePackManager, Proxy proxy, DataFixer dataFixer, ServerResourceManager serverResourceManager, MinecraftSessionService minecraftSessionService, GameProfileRepository gameProfileRepository, UserCache userCache, WorldGenerationProgressListenerFactory worldGenerationProgressListenerFactory, CallbackInfo ci) {
         this.playerValueContainers = new HashMap<>();
         this.valueContainer = ValueContainer.of(this.getSavePath(WorldSavePath.ROOT).normalize().resolve("config"), SaveType.LEVEL);
-        this.cachedConfigPackets = new HashMap<>();
+        this.peerSnapshot = new PeerSnapshot();
     }
 
     @Override
@@ -106,24 +102,13 @@ public abstract class MixinMinecraftServer implements ValueContainerProvider, Co
         return playerValueContainers.entrySet().iterator();
     }
 
-    @Override
-    public void send(String configDefinition, UUID except, PacketByteBuf peerBuf) {
-        cachedConfigPackets.compute(except, (k, v) -> new HashMap<>()).put(configDefinition, peerBuf);
-
-        PlayerLookup.all(((MinecraftServer) (Object) this)).forEach(player -> {
-            if (!player.getUuid().equals(except)) {
-                ServerPlayNetworking.send(player, ForwardUserConfigsS2CChannel.ID, peerBuf);
-            }
-        });
-    }
-
     @Override
     public void drop(ServerPlayerEntity player) {
-        cachedConfigPackets.remove(player.getUuid());
+        peerSnapshot.remove(player.getUuid());
     }
 
     @Override
-    public Iterable<Map.Entry<UUID, Map<String, PacketByteBuf>>> cached() {
-        return this.cachedConfigPackets.entrySet();
+    public PeerSnapshot getPeerSnapshot() {
+        return this.peerSnapshot;
     }
 }
@@ -23,11 +23,17 @@ import dev.inkwell.conrad.api.value.ValueKey;
 import dev.inkwell.conrad.api.value.data.DataType;
 import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.api.value.data.SyncType;
-import dev.inkwell.conrad.api.value.serialization.ConfigSerializer;
+import dev.inkwell.conrad.api.value.serialization.BinarySerializer;
 import dev.inkwell.conrad.api.value.util.Version;
 import dev.inkwell.conrad.impl.ConfigManagerImpl;
 import dev.inkwell.conrad.impl.networking.channels.Channel;
+import dev.inkwell.conrad.impl.networking.util.ChangeSet;
 import dev.inkwell.conrad.impl.networking.util.Disconnector;
+import dev.inkwell.conrad.impl.networking.util.SyncState;
+import dev.inkwell.conrad.impl.networking.util.WireSession;
+import dev.inkwell.conrad.impl.util.ValueEquality;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.EnvType;
@@ -40,21 +46,52 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.text.TranslatableText;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.function.Function;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 import java.util.function.Predicate;
 
 public class ConfigNetworking implements ModInitializer, ClientModInitializer {
-    public static <R> Result read(PacketByteBuf buf, Function<SaveType, ValueContainer> provider, Disconnector disconnector) {
+    private static final int TEXT = 0;
+    private static final int FORWARD = 1;
+    private static final int FULL = 2;
+
+    /**
+     * Decodes a config packet without applying it, see {@link ChangeSet}.
+     *
+     * @param session the IDs agreed on with the peer that sent the packet
+     * @return the decoded values, or null if the packet couldn't be decoded
+     */
+    public static @Nullable ChangeSet decode(PacketByteBuf buf, WireSession session, Disconnector disconnector) {
+        int id = buf.readVarInt();
+
+        if (id == TEXT) {
+            return decodeText(buf, disconnector);
+        }
+
+        ConfigDefinition<?> configDefinition = session.getDefinition(id - 1);
+        byte flags = buf.readByte();
+
+        if (configDefinition == null) {
+            ConfigManagerImpl.LOGGER.warn("Received values for config ID {}, which was never agreed on", id - 1);
+            return null;
+        }
+
+        // Versions and schemas were already checked during login
+        DataInput input = new DataInputStream(new ByteBufInputStream(buf));
+
+        return decode(configDefinition, (flags & FULL) != 0, (flags & FORWARD) != 0, valueContainer ->
+                BinarySerializer.INSTANCE.readValues(configDefinition, input, valueContainer));
+    }
+
+    private static <R> @Nullable ChangeSet decodeText(PacketByteBuf buf, Disconnector disconnector) {
         String configDefinitionString = buf.readString(32767);
         ConfigDefinition<R> configDefinition = ConfigManager.getDefinition(configDefinitionString);
         String userVersionString = buf.readString(32767);
         boolean forward = buf.readBoolean();
+        boolean full = buf.readBoolean();
 
         if (configDefinition != null) {
             try {
@@ -69,83 +106,215 @@ public class ConfigNetworking implements ModInitializer, ClientModInitializer {
                             localVersion.toString()));
 
                     // We'll also abort here to avoid sending useless info to other connected clients
-                    return new Result(forward, configDefinitionString, null);
+                    return null;
                 }
             } catch (VersionParsingException e) {
                 disconnector.config_disconnect(new TranslatableText("fabric.config.version_parse", configDefinition.toString(), userVersionString));
                 // We'll also abort here to avoid sending useless info to other connected clients
                 // Ideally we'd be able to do this during the login phase so that clients don't finish connecting at all
-                return new Result(forward, configDefinitionString, null);
+                return null;
             }
 
-            SaveType saveType = configDefinition.getSaveType();
+            byte[] bytes = buf.readByteArray();
 
-            if (saveType == SaveType.USER || saveType == SaveType.LEVEL) {
-                InputStream inputStream = new ByteArrayInputStream(buf.readByteArray());
-                ValueContainer valueContainer = provider.apply(saveType);
+            return decode(configDefinition, full, forward, valueContainer ->
+                    configDefinition.getSerializer().deserialize(configDefinition, new ByteArrayInputStream(bytes), valueContainer));
+        }
 
-                try {
-                    configDefinition.getSerializer().deserialize(configDefinition, inputStream, valueContainer);
+        return null;
+    }
 
-                    if (saveType == SaveType.LEVEL) {
-                        valueContainer.save(configDefinition);
-                    }
+    private static @Nullable ChangeSet decode(ConfigDefinition<?> configDefinition, boolean full, boolean forward, Decoder decoder) {
+        SaveType saveType = configDefinition.getSaveType();
 
-                    return new Result(forward, configDefinitionString, valueContainer);
-                } catch (IOException e) {
-                    ConfigManagerImpl.LOGGER.error("Failed to sync config '{}': {}", configDefinition, e.getMessage());
-                }
+        if (saveType != SaveType.USER && saveType != SaveType.LEVEL) return null;
+
+        ValueContainer staged = ValueContainer.detached(saveType);
+
+        try {
+            decoder.decode(staged);
+
+            return ChangeSet.of(configDefinition, full, forward, staged);
+        } catch (IOException e) {
+            ConfigManagerImpl.LOGGER.error("Failed to sync config '{}': {}", configDefinition, e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * @return which values of the specified config definition are synced, or null if none are
+     */
+    public static @Nullable Predicate<ValueKey<?>> getSyncPredicate(ConfigDefinition<?> configDefinition) {
+        if (configDefinition.getSaveType() != SaveType.USER) return key -> true;
+
+        Collection<SyncType> syncTypes = new HashSet<>();
+
+        // Checks each config key
+        for (ValueKey<?> value : configDefinition) {
+            for (SyncType syncType : value.getData(DataType.SYNC_TYPE)) {
+                syncTypes.add(syncType);
             }
         }
 
-        return new Result(forward, configDefinitionString, null);
+        // Checks the config definition itself
+        for (SyncType syncType : configDefinition.getData(DataType.SYNC_TYPE)) {
+            syncTypes.add(syncType);
+        }
+
+        if (syncTypes.isEmpty()) return null;
+
+        return key -> !key.getData(DataType.SYNC_TYPE).isEmpty();
     }
 
+    /**
+     * Builds a full snapshot of the synced values of a config definition, readable by any peer.
+     */
     public static <R> @Nullable PacketByteBuf toPacket(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
-        SaveType saveType = configDefinition.getSaveType();
+        return toPacket(configDefinition, valueContainer, null, WireSession.NONE);
+    }
 
-        Predicate<ValueKey<?>> predicate = key -> true;
-        boolean forward = false;
+    /**
+     * Builds a full snapshot of only some of the synced values of a config definition, readable by any peer. Receivers
+     * reset the values that are left out to their defaults, like any other value a snapshot doesn't contain, so the
+     * filter must leave out the same values for every snapshot the receiver is sent.
+     *
+     * @param filter which synced values to include
+     */
+    public static <R> @Nullable PacketByteBuf toSnapshot(ConfigDefinition<R> configDefinition, ValueContainer valueContainer, Predicate<ValueKey<?>> filter) {
+        Predicate<ValueKey<?>> synced = getSyncPredicate(configDefinition);
 
-        // We only want to construct and send the packet if it's actually gonna contain values
-        if (saveType == SaveType.USER) {
-            Collection<SyncType> syncTypes = new HashSet<>();
+        if (synced == null) return null;
 
-            // Checks each config key
-            for (ValueKey<?> value : configDefinition) {
-                for (SyncType syncType : value.getData(DataType.SYNC_TYPE)) {
-                    syncTypes.add(syncType);
-                }
-            }
+        Map<ValueKey<?>, Object> current = new HashMap<>();
+        Set<ValueKey<?>> included = new HashSet<>();
 
-            // Checks the config definition itself
-            for (SyncType syncType : configDefinition.getData(DataType.SYNC_TYPE)) {
-                syncTypes.add(syncType);
+        for (ValueKey<?> valueKey : configDefinition) {
+            if (!synced.test(valueKey) || !filter.test(valueKey)) continue;
+
+            Object value = valueContainer.get(valueKey);
+            current.put(valueKey, value);
+
+            if (!ValueEquality.isDefault(valueKey, value)) {
+                included.add(valueKey);
             }
+        }
 
-            if (syncTypes.isEmpty()) return null;
+        return encode(configDefinition, valueContainer, new Changes(true, included, current), WireSession.NONE);
+    }
 
-            forward = true;
-            predicate = key -> !key.getData(DataType.SYNC_TYPE).isEmpty();
+    /**
+     * Builds a packet with the synced values of a config definition for one peer.
+     * <p>
+     * If the peer already has a baseline for the definition, only values that changed since they were last sent are
+     * included, and nothing is built if none did. Otherwise, a full snapshot is built. Snapshots leave out values that
+     * equal their defaults, since receivers reset every value a snapshot doesn't contain.
+     *
+     * <p>
+     * Definitions the peer agreed on during login are written in binary, as their ID followed by the ID and payload of
+     * each value. Anything else is written as text, with the name and version of the definition.
+     *
+     * @param state   the values last sent to the peer, or null to always build a snapshot
+     * @param session the IDs agreed on with the peer
+     */
+    public static <R> @Nullable PacketByteBuf toPacket(ConfigDefinition<R> configDefinition, ValueContainer valueContainer, @Nullable SyncState state, WireSession session) {
+        Changes changes = getChanges(configDefinition, valueContainer, state);
+
+        if (changes == null) return null;
+
+        PacketByteBuf buf = encode(configDefinition, valueContainer, changes, session);
+
+        if (buf != null && state != null) {
+            state.record(configDefinition, changes.current);
         }
 
-        ConfigSerializer<R> serializer = configDefinition.getSerializer();
-        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        return buf;
+    }
 
-        buf.writeString(configDefinition.toString());
-        buf.writeString(configDefinition.getVersion().toString());
-        buf.writeBoolean(forward);
+    /**
+     * Determines which values a peer needs to be sent, see {@link #toPacket}.
+     *
+     * @param state the values last sent to the peer, or null for a full snapshot
+     * @return the values to send, or null if there is nothing to send
+     */
+    public static @Nullable Changes getChanges(ConfigDefinition<?> configDefinition, ValueContainer valueContainer, @Nullable SyncState state) {
+        return getChanges(configDefinition, valueContainer, state, null);
+    }
 
-        try {
-            ByteArrayOutputStream stream = new ByteArrayOutputStream();
-            serializer.serialize(configDefinition, stream, valueContainer, predicate, true);
-            byte[] bytes = stream.toByteArray();
+    /**
+     * Determines which values a peer needs to be sent, see {@link #toPacket}.
+     * <p>
+     * Filtered changes are never snapshots, since a snapshot would reset the values that were left out. If the peer
+     * has no baseline, every value that passes the filter is included instead.
+     *
+     * @param state  the values last sent to the peer, or null for a full snapshot
+     * @param filter limits which synced values the peer is sent, or null for all of them
+     * @return the values to send, or null if there is nothing to send
+     */
+    public static @Nullable Changes getChanges(ConfigDefinition<?> configDefinition, ValueContainer valueContainer, @Nullable SyncState state, @Nullable Predicate<ValueKey<?>> filter) {
+        Predicate<ValueKey<?>> synced = getSyncPredicate(configDefinition);
+
+        // We only want to construct and send the packet if it's actually gonna contain values
+        if (synced == null) return null;
+
+        boolean baseline = state != null && state.hasBaseline(configDefinition);
+        boolean full = !baseline && filter == null;
+
+        Map<ValueKey<?>, Object> current = new HashMap<>();
+        Set<ValueKey<?>> included = new HashSet<>();
+
+        for (ValueKey<?> valueKey : configDefinition) {
+            if (!synced.test(valueKey) || filter != null && !filter.test(valueKey)) continue;
+
+            Object value = valueContainer.get(valueKey);
+            current.put(valueKey, value);
+
+            // Defaults are built afresh by their supplier, and tables, arrays and data classes don't implement equals
+            boolean changed = full
+                    ? !ValueEquality.isDefault(valueKey, value)
+                    : !baseline || !ValueEquality.equal(valueKey, value, state.getSent(valueKey));
+
+            if (changed) {
+                included.add(valueKey);
+            }
+        }
+
+        // Snapshots are sent even when empty, since they also reset values the peer may still hold
+        if (!full && included.isEmpty()) return null;
+
+        return new Changes(full, included, current);
+    }
+
+    /**
+     * Encodes a set of changes for a peer, see {@link #toPacket}. Does not record them as sent.
+     */
+    public static <R> @Nullable PacketByteBuf encode(ConfigDefinition<R> configDefinition, ValueContainer valueContainer, Changes changes, WireSession session) {
+        boolean forward = configDefinition.getSaveType() == SaveType.USER;
+        boolean full = changes.full;
+        Set<ValueKey<?>> included = changes.included;
 
-            // If we didn't actually serialize anything, don't bother sending
-            if (bytes.length > 0) {
-                buf.writeByteArray(bytes);
-                return buf;
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        int id = session.getId(configDefinition);
+
+        try {
+            if (id >= 0) {
+                buf.writeVarInt(id + 1);
+                buf.writeByte((forward ? FORWARD : 0) | (full ? FULL : 0));
+
+                BinarySerializer.INSTANCE.writeValues(configDefinition, new DataOutputStream(new ByteBufOutputStream(buf)), valueContainer, included::contains);
+            } else {
+                buf.writeVarInt(TEXT);
+                buf.writeString(configDefinition.toString());
+                buf.writeString(configDefinition.getVersion().toString());
+                buf.writeBoolean(forward);
+                buf.writeBoolean(full);
+
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                configDefinition.getSerializer().serialize(configDefinition, stream, valueContainer, included::contains, true);
+                buf.writeByteArray(stream.toByteArray());
             }
+
+            return buf;
         } catch (IOException e) {
             ConfigManagerImpl.LOGGER.error("Failed to sync config '{}': {}", configDefinition, e.getMessage());
         }
@@ -153,18 +322,31 @@ public class ConfigNetworking implements ModInitializer, ClientModInitializer {
         return null;
     }
 
-    public static boolean isSynced(ConfigDefinition<?> configDefinition) {
-        if (!configDefinition.getData(DataType.SYNC_TYPE).isEmpty()) {
-            return true;
-        }
+    /**
+     * Hashes the synced values of a config, so that peers can tell whether they hold the same values without sending
+     * them. Hashes are only comparable between peers with the same schema, see {@link BinarySerializer#getSchemaHash}.
+     *
+     * @return the hash of the values, or 0 if they couldn't be hashed, which should never be treated as a match
+     */
+    public static long getContentHash(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+        Predicate<ValueKey<?>> synced = getSyncPredicate(configDefinition);
 
-        for (ValueKey<?> valueKey : configDefinition) {
-            if (!valueKey.getData(DataType.SYNC_TYPE).isEmpty()) {
-                return true;
-            }
+        if (synced == null) return 0;
+
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            BinarySerializer.INSTANCE.writeValues(configDefinition, new DataOutputStream(stream), valueContainer, synced);
+
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(stream.toByteArray())).getLong();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            ConfigManagerImpl.LOGGER.error("Failed to hash config '{}': {}", configDefinition, e.getMessage());
         }
 
-        return false;
+        return 0;
+    }
+
+    public static boolean isSynced(ConfigDefinition<?> configDefinition) {
+        return ConfigManagerImpl.isSynced(configDefinition);
     }
 
     @Override
@@ -182,15 +364,36 @@ public class ConfigNetworking implements ModInitializer, ClientModInitializer {
         }
     }
 
-    public static final class Result {
-        public final boolean forward;
-        public final String configDefinitionString;
-        public final @Nullable ValueContainer valueContainer;
+    /**
+     * The values to send to a peer. Peers that need the same values can share one encoded packet, so changes are
+     * equal if they include the same values, regardless of the values themselves.
+     */
+    public static final class Changes {
+        public final boolean full;
+        public final Set<ValueKey<?>> included;
+        public final Map<ValueKey<?>, Object> current;
+
+        private Changes(boolean full, Set<ValueKey<?>> included, Map<ValueKey<?>, Object> current) {
+            this.full = full;
+            this.included = included;
+            this.current = current;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Changes changes = (Changes) o;
+            return full == changes.full && included.equals(changes.included);
+        }
 
-        public Result(boolean forward, String configDefinitionString, @Nullable ValueContainer valueContainer) {
-            this.forward = forward;
-            this.configDefinitionString = configDefinitionString;
-            this.valueContainer = valueContainer;
+        @Override
+        public int hashCode() {
+            return Objects.hash(full, included);
         }
     }
+
+    private interface Decoder {
+        void decode(ValueContainer valueContainer) throws IOException;
+    }
 }
@@ -22,20 +22,28 @@ import dev.inkwell.conrad.api.value.ValueContainer;
 import dev.inkwell.conrad.api.value.ValueContainerProvider;
 import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+import dev.inkwell.conrad.impl.networking.util.ChangeSet;
 import dev.inkwell.conrad.impl.networking.util.ConfigValueCache;
-import dev.inkwell.conrad.impl.networking.util.ConfigValueSender;
 import dev.inkwell.conrad.impl.networking.util.Disconnector;
-import io.netty.buffer.Unpooled;
+import dev.inkwell.conrad.impl.networking.util.Inbox;
+import dev.inkwell.conrad.impl.networking.util.SyncQueue;
+import dev.inkwell.conrad.impl.networking.util.SyncState;
+import dev.inkwell.conrad.impl.networking.util.Throttle;
+import dev.inkwell.conrad.impl.networking.util.WireSession;
+import dev.inkwell.conrad.impl.util.Metrics;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientLoginConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
-import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.network.ClientPlayerEntity;
@@ -43,13 +51,54 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.TranslatableText;
 import net.minecraft.util.Identifier;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 @EnvironmentInterface(value = EnvType.CLIENT, itf = ClientModInitializer.class)
 @EnvironmentInterface(value = EnvType.CLIENT, itf = ClientPlayConnectionEvents.Join.class)
 public class ConfigValueC2SChannel extends C2SChannel implements ServerPlayConnectionEvents.Disconnect {
     private static final Identifier ID = new Identifier("conrad", "channel/send_client_values");
 
+    // Not stripped on the server, since static initializers would still try to assign them
+    private static final SyncState SERVER_STATE = new SyncState();
+    private static SyncQueue<MinecraftClient, ConfigDefinition<?>> clientQueue;
+
+    private static final SyncQueue<MinecraftServer, ConfigDefinition<?>> LEVEL_QUEUE = new SyncQueue<>((server, configDefinition, valueContainer) ->
+            ServerConfigS2CChannel.broadcast(configDefinition, valueContainer, PlayerLookup.all(server)));
+    private static final SyncQueue<MinecraftServer, Forward> FORWARD_QUEUE = new SyncQueue<>((server, forward, valueContainer) ->
+            ForwardUserConfigsS2CChannel.forward(server, forward.sender, forward.configDefinition, valueContainer));
+    private static final Map<UUID, Throttle> THROTTLES = new ConcurrentHashMap<>();
+    private static final Inbox INBOX = new Inbox();
+    private static final Metrics.Metric KICKS = Metrics.get("sync.throttle_kicks");
+
+    /**
+     * Records level values the server sent us as held by the server, so that changing a value back to what we last
+     * sent ourselves isn't mistaken for no change at all.
+     */
+    @Environment(EnvType.CLIENT)
+    public static void recordReceived(ChangeSet changeSet) {
+        if (changeSet.getConfigDefinition().getSaveType() == SaveType.LEVEL) {
+            SERVER_STATE.record(changeSet);
+        }
+    }
+
+    /**
+     * Queues the values of a config to be sent to the server with the next flush, see {@link SyncQueue}.
+     */
+    @Environment(EnvType.CLIENT)
+    public static void enqueue(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+        if (clientQueue != null) {
+            clientQueue.enqueue(configDefinition, valueContainer);
+        } else {
+            sendToServer(configDefinition, valueContainer);
+        }
+    }
+
     @Environment(EnvType.CLIENT)
     public static <R> void sendToServer(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
         MinecraftClient client = MinecraftClient.getInstance();
@@ -63,28 +112,81 @@ public class ConfigValueC2SChannel extends C2SChannel implements ServerPlayConne
                 // Also don't try and sync save types other than Conrad's builtin save types.
                 || saveType != SaveType.LEVEL && saveType != SaveType.USER) return;
 
-        PacketByteBuf buf = ConfigNetworking.toPacket(configDefinition, valueContainer);
+        PacketByteBuf buf = ConfigNetworking.toPacket(configDefinition, valueContainer, SERVER_STATE, WireSession.getServer());
 
         if (buf != null) {
             ClientPlayNetworking.send(ID, buf);
         }
     }
 
+    /**
+     * @return the rate limits of a player, shared by every channel they send config packets on
+     */
+    static Throttle getThrottle(UUID player) {
+        return THROTTLES.computeIfAbsent(player, id -> new Throttle());
+    }
+
+    /**
+     * Disconnects a player for going over the limits of their {@link Throttle}.
+     */
+    static void kick(MinecraftServer server, ServerPlayNetworkHandler handler) {
+        KICKS.increment();
+        server.execute(() -> ((Disconnector) handler).config_disconnect(new TranslatableText("conrad.rate_limited")));
+    }
+
     @Override
     public Identifier getId() {
         return ID;
     }
 
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        super.onInitializeClient();
+
+        clientQueue = new SyncQueue<>((client, configDefinition, valueContainer) -> sendToServer(configDefinition, valueContainer));
+        ClientTickEvents.END_CLIENT_TICK.register(client -> clientQueue.tick(client));
+
+        // The server has none of our values yet, so each definition starts with a full snapshot. This happens before
+        // level values are sent during login, which are recorded as they arrive. IDs agreed on with the last server
+        // must not outlive the connection either, since servers that don't check versions never replace them
+        ClientLoginConnectionEvents.INIT.register((handler, client) -> {
+            SERVER_STATE.reset();
+            WireSession.setServer(WireSession.NONE);
+        });
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> WireSession.setServer(WireSession.NONE));
+    }
+
     @Override
     public void onInitialize() {
         super.onInitialize();
 
         ServerPlayConnectionEvents.DISCONNECT.register(this);
+
+        ServerTickEvents.START_SERVER_TICK.register(server -> {
+            INBOX.drain();
+            THROTTLES.forEach((uuid, throttle) -> throttle.drain(changeSet -> apply(uuid, changeSet)));
+        });
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            LEVEL_QUEUE.tick(server);
+            FORWARD_QUEUE.tick(server);
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            LEVEL_QUEUE.clear();
+            FORWARD_QUEUE.clear();
+            THROTTLES.clear();
+            INBOX.clear();
+        });
     }
 
     @Override
     public void onPlayDisconnect(ServerPlayNetworkHandler handler, MinecraftServer server) {
         ((ConfigValueCache) server).drop(handler.player);
+        WireSession.remove(handler.player.getUuid());
+        THROTTLES.remove(handler.player.getUuid());
+        INBOX.remove((Disconnector) handler);
     }
 
     @Override
@@ -104,34 +206,82 @@ public class ConfigValueC2SChannel extends C2SChannel implements ServerPlayConne
         this.receive(server, player, handler, buf);
     }
 
-    private <R> void receive(MinecraftServer server, ServerPlayerEntity sender, ServerPlayNetworkHandler handler, PacketByteBuf buf) {
-        buf.markReaderIndex();
-
-        ConfigNetworking.Result result = ConfigNetworking.read(buf, saveType -> {
-            ValueContainerProvider provider = ValueContainerProvider.getInstance(saveType);
-            return saveType == SaveType.USER
-                    ? provider.getPlayerValueContainer(sender.getUuid())
-                    : provider.getValueContainer(saveType);
-        }, ((Disconnector) handler));
+    private void receive(MinecraftServer server, ServerPlayerEntity sender, ServerPlayNetworkHandler handler, PacketByteBuf buf) {
+        UUID uuid = sender.getUuid();
+        Throttle throttle = getThrottle(uuid);
+        int size = buf.readableBytes();
+        boolean acquired = throttle.tryAcquire(size);
 
-        ConfigDefinition<R> configDefinition = ConfigManager.getDefinition(result.configDefinitionString);
+        if (!acquired && throttle.isAbusive()) {
+            kick(server, handler);
+            return;
+        }
 
-        if (configDefinition != null && configDefinition.getSaveType() == SaveType.LEVEL) {
-            PacketByteBuf out = ConfigNetworking.toPacket(configDefinition, result.valueContainer);
+        INBOX.submit(buf, WireSession.get(uuid), (Disconnector) handler, changeSet -> {
+            // The player disconnected while the packet was being decoded
+            if (THROTTLES.get(uuid) != throttle) return;
 
-            if (out != null) {
-                PlayerLookup.all(server).forEach(player -> ServerPlayNetworking.send(player, ServerConfigS2CChannel.ID, out));
+            // Packets that were still being decoded when others were held back must wait their turn too
+            if (acquired && !throttle.hasBacklog()) {
+                apply(uuid, changeSet);
+            } else {
+                throttle.defer(changeSet, acquired ? 0 : size);
             }
+        });
+    }
+
+    private static void apply(UUID sender, ChangeSet changeSet) {
+        ConfigDefinition<?> configDefinition = changeSet.getConfigDefinition();
+        ValueContainer valueContainer = getValueContainer(sender, configDefinition.getSaveType());
+
+        changeSet.applyTo(valueContainer);
+
+        if (configDefinition.getSaveType() == SaveType.LEVEL) {
+            ConfigManager.saveAsync(configDefinition, valueContainer);
         }
 
-        if (result.forward) {
-            buf.resetReaderIndex();
-            PacketByteBuf peerBuf = new PacketByteBuf(Unpooled.buffer());
+        enqueue(sender, configDefinition, changeSet.isForward(), valueContainer);
+    }
+
+    private static void enqueue(UUID sender, ConfigDefinition<?> configDefinition, boolean forward, ValueContainer valueContainer) {
+        // Values are applied right away, but only sent on once per flush
+        if (configDefinition.getSaveType() == SaveType.LEVEL) {
+            LEVEL_QUEUE.enqueue(configDefinition, valueContainer);
+        }
 
-            peerBuf.writeUuid(sender.getUuid());
-            peerBuf.writeBytes(buf);
+        if (forward) {
+            FORWARD_QUEUE.enqueue(new Forward(sender, configDefinition), valueContainer);
+        }
+    }
+
+    private static ValueContainer getValueContainer(UUID player, SaveType saveType) {
+        ValueContainerProvider provider = ValueContainerProvider.getInstance(saveType);
+
+        return saveType == SaveType.USER
+                ? provider.getPlayerValueContainer(player)
+                : provider.getValueContainer(saveType);
+    }
+
+    private static final class Forward {
+        private final UUID sender;
+        private final ConfigDefinition<?> configDefinition;
+
+        private Forward(UUID sender, ConfigDefinition<?> configDefinition) {
+            this.sender = sender;
+            this.configDefinition = configDefinition;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Forward forward = (Forward) o;
+            return sender.equals(forward.sender) && configDefinition.equals(forward.configDefinition);
+        }
 
-            ((ConfigValueSender) server).send(result.configDefinitionString, sender.getUuid(), peerBuf);
+        @Override
+        public int hashCode() {
+            return Objects.hash(sender, configDefinition);
         }
     }
 }
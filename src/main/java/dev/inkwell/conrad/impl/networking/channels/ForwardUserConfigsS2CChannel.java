@@ -14,56 +14,230 @@
  * limitations under the License.
  */
 
+
 package dev.inkwell.conrad.impl.networking.channels;
 
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.PeerInterest;
 import dev.inkwell.conrad.api.value.ValueContainer;
 import dev.inkwell.conrad.api.value.ValueContainerProvider;
 import dev.inkwell.conrad.api.value.data.SaveType;
 import dev.inkwell.conrad.impl.networking.ConfigNetworking;
 import dev.inkwell.conrad.impl.networking.util.ConfigValueCache;
 import dev.inkwell.conrad.impl.networking.util.Disconnector;
+import dev.inkwell.conrad.impl.networking.util.Inbox;
+import dev.inkwell.conrad.impl.networking.util.InterestIndex;
+import dev.inkwell.conrad.impl.networking.util.SyncState;
+import dev.inkwell.conrad.impl.networking.util.WireSession;
+import dev.inkwell.conrad.impl.util.Metrics;
+import io.netty.buffer.Unpooled;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 @EnvironmentInterface(value = EnvType.CLIENT, itf = ClientPlayNetworking.PlayChannelHandler.class)
 public class ForwardUserConfigsS2CChannel extends S2CChannel {
     public static final Identifier ID = new Identifier("conrad", "channel/forward_user_values");
 
+    // How often players that are only interested in players nearby are checked for values they haven't been sent
+    private static final int RANGE_CHECK_INTERVAL = 20;
+
+    private static final Inbox INBOX = new Inbox();
+    private static final InterestIndex INTERESTS = new InterestIndex();
+    // The values last forwarded to each player, per player they belong to
+    private static final Map<UUID, Map<UUID, SyncState>> STATES = new ConcurrentHashMap<>();
+    // The players each player only interested in players nearby was in range of at the last check, per definition
+    private static final Map<UUID, Map<ConfigDefinition<?>, Set<UUID>>> IN_RANGE = new ConcurrentHashMap<>();
+    private static final Metrics.Metric FORWARDED = Metrics.get("sync.forwarded_packets");
+
+    /**
+     * Sends the values of one player that changed since they were last forwarded to every other player interested in
+     * them, see {@link PeerInterest}.
+     * <p>
+     * Players that need the same values share one encoded packet, like {@link ServerConfigS2CChannel#broadcast}.
+     */
+    public static void forward(MinecraftServer server, UUID sender, ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+        ServerPlayerEntity source = server.getPlayerManager().getPlayer(sender);
+
+        if (source == null || !PeerInterest.isForwarded(configDefinition)) return;
+
+        // Players that join later are sent everything at once, see PeerSnapshotS2CChannel. They are interested in every
+        // forwarded value until their client says otherwise, and INFO values are only meant for the server
+        PacketByteBuf snapshot = ConfigNetworking.toSnapshot(configDefinition, valueContainer, PeerInterest.of(configDefinition)::test);
+
+        if (snapshot != null) {
+            ((ConfigValueCache) server).getPeerSnapshot().put(sender, configDefinition.toString(), snapshot);
+        }
+
+        Map<ServerConfigS2CChannel.Encoding, PacketByteBuf> encoded = new HashMap<>();
+
+        INTERESTS.getSubscribers(configDefinition).forEach((player, interest) ->
+                send(source, server.getPlayerManager().getPlayer(player), interest, configDefinition, valueContainer, encoded));
+    }
+
+    /**
+     * Replaces what a player is interested in. Values they were already sent when joining aren't sent again.
+     */
+    static void subscribe(ServerPlayerEntity player, Collection<PeerInterest> interests) {
+        INTERESTS.put(player.getUuid(), interests);
+
+        // Their interest may cover values that weren't sent before, so every player in range is checked once more
+        IN_RANGE.remove(player.getUuid());
+    }
+
+    /**
+     * Sends players that are only interested in players nearby the values of players that came into range since the
+     * last check. Players that stay in range are sent their changes by {@link #forward} as they happen, so only the
+     * ones that weren't in range before need comparing with what was last sent.
+     */
+    private static void checkRanges(MinecraftServer server) {
+        Collection<ServerPlayerEntity> sources = PlayerLookup.all(server);
+
+        INTERESTS.getRanged().forEach((configDefinition, players) -> {
+            if (players.isEmpty()) return;
+
+            Map<UUID, PeerInterest> subscribers = INTERESTS.getSubscribers(configDefinition);
+            Map<UUID, ValueContainer> valueContainers = new HashMap<>();
+            Map<UUID, Map<ServerConfigS2CChannel.Encoding, PacketByteBuf>> encoded = new HashMap<>();
+
+            for (UUID player : players) {
+                PeerInterest interest = subscribers.get(player);
+                ServerPlayerEntity receiver = server.getPlayerManager().getPlayer(player);
+
+                if (interest == null || receiver == null) continue;
+
+                Map<ConfigDefinition<?>, Set<UUID>> tracked = IN_RANGE.computeIfAbsent(player, id -> new ConcurrentHashMap<>());
+                Set<UUID> previous = tracked.getOrDefault(configDefinition, Collections.emptySet());
+                Set<UUID> current = ConcurrentHashMap.newKeySet();
+
+                for (ServerPlayerEntity source : sources) {
+                    if (source == receiver || !interest.isInRange(receiver, source)) continue;
+
+                    UUID sender = source.getUuid();
+                    current.add(sender);
+
+                    if (!previous.contains(sender)) {
+                        send(source, receiver, interest, configDefinition,
+                                valueContainers.computeIfAbsent(sender, id -> getValueContainer(source)),
+                                encoded.computeIfAbsent(sender, id -> new HashMap<>()));
+                    }
+                }
+
+                tracked.put(configDefinition, current);
+            }
+        });
+    }
+
+    private static void send(ServerPlayerEntity source, ServerPlayerEntity receiver, PeerInterest interest, ConfigDefinition<?> configDefinition, ValueContainer valueContainer, Map<ServerConfigS2CChannel.Encoding, PacketByteBuf> encoded) {
+        if (receiver == null || receiver == source || !interest.isInRange(receiver, source)) return;
+
+        SyncState state = STATES.computeIfAbsent(receiver.getUuid(), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(source.getUuid(), id -> new SyncState());
+        ConfigNetworking.Changes changes = ConfigNetworking.getChanges(configDefinition, valueContainer, state, interest::test);
+
+        if (changes == null) return;
+
+        // Config IDs are the same for every player, so there are only two encodings to choose from
+        boolean binary = WireSession.get(receiver.getUuid()).getId(configDefinition) >= 0;
+        PacketByteBuf buf = encoded.computeIfAbsent(new ServerConfigS2CChannel.Encoding(changes, binary), encoding -> {
+            PacketByteBuf values = ConfigNetworking.encode(configDefinition, valueContainer, changes, binary ? WireSession.getCanonical() : WireSession.NONE);
+
+            return values == null ? null : withSender(source.getUuid(), values);
+        });
+
+        if (buf != null) {
+            state.record(configDefinition, changes.current);
+            ServerPlayNetworking.send(receiver, ID, new PacketByteBuf(buf.duplicate()));
+            FORWARDED.increment();
+        }
+    }
+
+    private static ValueContainer getValueContainer(ServerPlayerEntity player) {
+        return ValueContainerProvider.getInstance(SaveType.USER).getPlayerValueContainer(player.getUuid());
+    }
+
+    private static PacketByteBuf withSender(UUID sender, PacketByteBuf buf) {
+        return new PacketByteBuf(Unpooled.wrappedBuffer(new PacketByteBuf(Unpooled.buffer(16)).writeUuid(sender), buf));
+    }
+
     @Override
     public Identifier getId() {
         return ID;
     }
 
     @Override
-    public void onPlayReady(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
-        UUID receiverId = handler.player.getUuid();
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        super.onInitializeClient();
+
+        ClientTickEvents.START_CLIENT_TICK.register(client -> INBOX.drain());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> INBOX.clear());
+    }
+
+    @Override
+    public void onInitialize() {
+        super.onInitialize();
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
+            UUID player = handler.player.getUuid();
+
+            INTERESTS.remove(player);
+            STATES.remove(player);
+            STATES.values().forEach(states -> states.remove(player));
+            IN_RANGE.remove(player);
+            IN_RANGE.values().forEach(tracked -> tracked.values().forEach(players -> players.remove(player)));
+        });
 
-        for (Map.Entry<UUID, Map<String, PacketByteBuf>> entry : ((ConfigValueCache) server).cached()) {
-            if (!entry.getKey().equals(receiverId)) {
-                entry.getValue().values().forEach(buf -> ServerPlayNetworking.send(handler.player, this.getId(), buf));
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            if (server.getTicks() % RANGE_CHECK_INTERVAL == 0) {
+                checkRanges(server);
             }
-        }
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            INTERESTS.clear();
+            STATES.clear();
+            IN_RANGE.clear();
+        });
+    }
+
+    @Override
+    public void onPlayReady(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
+        // Until their client says otherwise, players are interested in everything. Their values are sent all at once
+        // by PeerSnapshotS2CChannel rather than here.
+        INTERESTS.putDefault(handler.player.getUuid());
     }
 
     @Override
     @Environment(EnvType.CLIENT)
     public void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
         UUID user = buf.readUuid();
-        ValueContainer container = ValueContainerProvider.getInstance(SaveType.USER).getPlayerValueContainer(user);
 
-        ConfigNetworking.read(buf, s -> container, (Disconnector) handler);
+        INBOX.submit(buf, WireSession.getServer(), (Disconnector) handler, changeSet ->
+                changeSet.applyTo(ValueContainerProvider.getInstance(SaveType.USER).getPlayerValueContainer(user)));
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.channels;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueContainerProvider;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+import dev.inkwell.conrad.impl.networking.util.ChangeSet;
+import dev.inkwell.conrad.impl.networking.util.WireSession;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.fabric.api.client.networking.v1.ClientLoginNetworking;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.ServerLoginNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientLoginNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerLoginNetworkHandler;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Sends a joining player the values of LEVEL configs they don't already have during login, so they hold the
+ * server's values before the world loads. Which configs those are is worked out by {@link VersionCheckChannel}.
+ */
+@EnvironmentInterface(value = EnvType.CLIENT, itf = ClientLoginNetworking.LoginQueryRequestHandler.class)
+public class LevelValuesChannel extends LoginQueryChannel {
+    private static final Identifier ID = new Identifier("conrad", "channel/level_values");
+
+    // Login query payloads are limited to 1 MiB, and each count and length takes up to five bytes
+    private static final int MAX_QUERY_SIZE = 1024 * 1024 - 5;
+    private static final int LENGTH_SIZE = 5;
+
+    /**
+     * Sends full snapshots of the specified LEVEL configs, split over as many queries as it takes to keep each one
+     * under the size limit. Login doesn't finish until every query has been answered.
+     *
+     * @param session the IDs agreed on with the player
+     * @return the configs whose snapshots were too large to send during login
+     */
+    static Collection<ConfigDefinition<?>> send(PacketSender sender, Collection<ConfigDefinition<?>> definitions, ValueContainer valueContainer, WireSession session) {
+        Collection<ConfigDefinition<?>> skipped = new ArrayList<>();
+        List<PacketByteBuf> snapshots = new ArrayList<>();
+        int size = 0;
+
+        for (ConfigDefinition<?> configDefinition : definitions) {
+            PacketByteBuf snapshot = ConfigNetworking.toPacket(configDefinition, valueContainer, null, session);
+
+            if (snapshot == null) continue;
+
+            int snapshotSize = LENGTH_SIZE + snapshot.readableBytes();
+
+            if (snapshotSize > MAX_QUERY_SIZE) {
+                skipped.add(configDefinition);
+                continue;
+            }
+
+            if (size + snapshotSize > MAX_QUERY_SIZE) {
+                sendQuery(sender, snapshots);
+                snapshots.clear();
+                size = 0;
+            }
+
+            snapshots.add(snapshot);
+            size += snapshotSize;
+        }
+
+        if (!snapshots.isEmpty()) {
+            sendQuery(sender, snapshots);
+        }
+
+        return skipped;
+    }
+
+    private static void sendQuery(PacketSender sender, List<PacketByteBuf> snapshots) {
+        PacketByteBuf query = new PacketByteBuf(Unpooled.buffer());
+        query.writeVarInt(snapshots.size());
+
+        for (PacketByteBuf snapshot : snapshots) {
+            query.writeVarInt(snapshot.readableBytes());
+            query.writeBytes(snapshot);
+        }
+
+        sender.sendPacket(ID, query);
+    }
+
+    @Override
+    public Identifier getId() {
+        return ID;
+    }
+
+    @Override
+    protected void sendQuery(ServerLoginNetworkHandler handler, MinecraftServer server, PacketSender packetSender, ServerLoginNetworking.LoginSynchronizer synchronizer) {
+        // Only sent in response to the version check, once we know which values the player is missing
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    protected CompletableFuture<PacketByteBuf> handleQuery(MinecraftClient client, ClientLoginNetworkHandler handler, PacketByteBuf buf, Consumer<GenericFutureListener<? extends Future<? super Void>>> listenerAdder) {
+        List<ChangeSet> changeSets = new ArrayList<>();
+        WireSession session = WireSession.getServer();
+
+        for (int i = buf.readVarInt(); i > 0; --i) {
+            int length = buf.readVarInt();
+
+            if (length < 0 || length > buf.readableBytes()) {
+                ConfigManagerImpl.LOGGER.error("Received a malformed snapshot of level values during login");
+                break;
+            }
+
+            // The query is only read before this method returns, so there is no need to copy it
+            PacketByteBuf snapshot = new PacketByteBuf(buf.readSlice(length));
+
+            // Versions were checked moments ago, so there is nothing left to disconnect for
+            ChangeSet changeSet = ConfigNetworking.decode(snapshot, session, text ->
+                    ConfigManagerImpl.LOGGER.warn("Unexpected config mismatch during login: {}", text.getString()));
+
+            if (changeSet != null) {
+                changeSets.add(changeSet);
+            }
+        }
+
+        // Listeners expect to be called on the client thread
+        return CompletableFuture.supplyAsync(() -> {
+            ValueContainer valueContainer = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
+
+            for (ChangeSet changeSet : changeSets) {
+                changeSet.applyTo(valueContainer);
+                ConfigValueC2SChannel.recordReceived(changeSet);
+            }
+
+            return new PacketByteBuf(Unpooled.buffer(0));
+        }, client::execute);
+    }
+
+    @Override
+    protected void handleQueryResponse(MinecraftServer server, ServerLoginNetworkHandler handler, boolean understood, PacketByteBuf buf, ServerLoginNetworking.LoginSynchronizer synchronizer, PacketSender responseSender) {
+        // The response only tells us the values arrived. Login already waits for every query to be answered
+    }
+}
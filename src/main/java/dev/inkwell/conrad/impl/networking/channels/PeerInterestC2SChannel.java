@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.channels;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.PeerInterest;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.networking.util.Throttle;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells the server which forwarded values the client uses, see {@link PeerInterest}.
+ */
+@EnvironmentInterface(value = EnvType.CLIENT, itf = ClientPlayConnectionEvents.Join.class)
+public class PeerInterestC2SChannel extends C2SChannel {
+    private static final Identifier ID = new Identifier("conrad", "channel/peer_interest");
+
+    private static final int MAX_INTERESTS = 256;
+    private static final int MAX_KEYS = 4096;
+
+    // Only the latest declaration of each player matters, so they're applied at most once per tick
+    private static final Map<UUID, List<PeerInterest>> PENDING = new ConcurrentHashMap<>();
+
+    @Environment(EnvType.CLIENT)
+    public static void sendToServer() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.player == null) return;
+
+        List<PeerInterest> interests = PeerInterest.getDeclared();
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+
+        buf.writeVarInt(interests.size());
+
+        for (PeerInterest interest : interests) {
+            Set<ValueKey<?>> keys = interest.getKeys();
+
+            buf.writeString(interest.getConfigDefinition().toString());
+            buf.writeVarInt(interest.getRange());
+            buf.writeBoolean(keys != null);
+
+            if (keys != null) {
+                buf.writeVarInt(keys.size());
+
+                for (ValueKey<?> valueKey : keys) {
+                    buf.writeString(valueKey.toString());
+                }
+            }
+        }
+
+        ClientPlayNetworking.send(ID, buf);
+    }
+
+    @Override
+    public Identifier getId() {
+        return ID;
+    }
+
+    @Override
+    public void onInitialize() {
+        super.onInitialize();
+
+        ServerTickEvents.START_SERVER_TICK.register(server -> {
+            for (UUID uuid : PENDING.keySet()) {
+                List<PeerInterest> interests = PENDING.remove(uuid);
+                ServerPlayerEntity player = server.getPlayerManager().getPlayer(uuid);
+
+                // The player may have left after their declaration arrived
+                if (interests != null && player != null && !player.isDisconnected()) {
+                    ForwardUserConfigsS2CChannel.subscribe(player, interests);
+                }
+            }
+        });
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> PENDING.remove(handler.player.getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> PENDING.clear());
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onPlayReady(ClientPlayNetworkHandler handler, PacketSender sender, MinecraftClient client) {
+        sendToServer();
+    }
+
+    @Override
+    public void receive(MinecraftServer server, ServerPlayerEntity player, ServerPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
+        Throttle throttle = ConfigValueC2SChannel.getThrottle(player.getUuid());
+
+        if (!throttle.tryAcquire(buf.readableBytes()) && throttle.isAbusive()) {
+            ConfigValueC2SChannel.kick(server, handler);
+            return;
+        }
+
+        List<PeerInterest> interests = new ArrayList<>();
+        int count = buf.readVarInt();
+
+        if (count < 0 || count > MAX_INTERESTS) {
+            ConfigManagerImpl.LOGGER.warn("Ignoring {} peer interests from {}", count, player.getUuid());
+            return;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            ConfigDefinition<?> configDefinition = ConfigManager.getDefinition(buf.readString(32767));
+            int range = buf.readVarInt();
+            Collection<ValueKey<?>> keys = null;
+
+            if (buf.readBoolean()) {
+                keys = new ArrayList<>();
+                int keyCount = buf.readVarInt();
+
+                if (keyCount < 0 || keyCount > MAX_KEYS) {
+                    ConfigManagerImpl.LOGGER.warn("Ignoring peer interest in {} values from {}", keyCount, player.getUuid());
+                    return;
+                }
+
+                for (int j = keyCount; j > 0; --j) {
+                    ValueKey<?> valueKey = ConfigManager.getValue(buf.readString(32767));
+
+                    if (valueKey != null && valueKey.getConfig().equals(configDefinition)) {
+                        keys.add(valueKey);
+                    }
+                }
+            }
+
+            if (configDefinition != null && PeerInterest.isForwarded(configDefinition)) {
+                interests.add(PeerInterest.of(configDefinition, range, keys));
+            }
+        }
+
+        PENDING.put(player.getUuid(), interests);
+    }
+}
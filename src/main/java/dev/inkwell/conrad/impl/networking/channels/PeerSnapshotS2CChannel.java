@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.channels;
+
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueContainerProvider;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.impl.networking.util.ChangeSet;
+import dev.inkwell.conrad.impl.networking.util.ConfigValueCache;
+import dev.inkwell.conrad.impl.networking.util.Disconnector;
+import dev.inkwell.conrad.impl.networking.util.Inbox;
+import dev.inkwell.conrad.impl.networking.util.PeerSnapshot;
+import dev.inkwell.conrad.impl.util.ClientUtil;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.util.Identifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sends joining players the synced USER values of everyone else online, as a few compressed chunks rather than one
+ * packet per player and config. See {@link PeerSnapshot}.
+ */
+@EnvironmentInterface(value = EnvType.CLIENT, itf = ClientPlayNetworking.PlayChannelHandler.class)
+public class PeerSnapshotS2CChannel extends S2CChannel {
+    public static final Identifier ID = new Identifier("conrad", "channel/peer_snapshot");
+
+    private static final Inbox INBOX = new Inbox();
+
+    @Override
+    public Identifier getId() {
+        return ID;
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        super.onInitializeClient();
+
+        ClientTickEvents.START_CLIENT_TICK.register(client -> INBOX.drain());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> INBOX.clear());
+    }
+
+    @Override
+    public void onPlayReady(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
+        for (PacketByteBuf chunk : ((ConfigValueCache) server).getPeerSnapshot().getChunks()) {
+            ServerPlayNetworking.send(handler.player, ID, chunk);
+        }
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
+        INBOX.submit(buf, (Disconnector) handler, PeerSnapshot::read, players -> {
+            ValueContainerProvider provider = ValueContainerProvider.getInstance(SaveType.USER);
+
+            for (Map.Entry<UUID, List<ChangeSet>> entry : players.entrySet()) {
+                // Our own values may still be in the snapshot if we reconnected before the server noticed
+                if (ClientUtil.isLocalPlayer(entry.getKey())) continue;
+
+                ValueContainer valueContainer = provider.getPlayerValueContainer(entry.getKey());
+
+                for (ChangeSet changeSet : entry.getValue()) {
+                    changeSet.applyTo(valueContainer);
+                }
+            }
+        });
+    }
+}
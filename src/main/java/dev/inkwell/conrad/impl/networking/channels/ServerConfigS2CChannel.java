@@ -16,18 +16,27 @@
 
 package dev.inkwell.conrad.impl.networking.channels;
 
+import com.mojang.authlib.GameProfile;
 import dev.inkwell.conrad.api.value.ConfigDefinition;
 import dev.inkwell.conrad.api.value.ConfigManager;
 import dev.inkwell.conrad.api.value.ValueContainer;
 import dev.inkwell.conrad.api.value.ValueContainerProvider;
 import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.impl.mixin.GameProfileAccessor;
 import dev.inkwell.conrad.impl.networking.ConfigNetworking;
 import dev.inkwell.conrad.impl.networking.util.Disconnector;
+import dev.inkwell.conrad.impl.networking.util.Inbox;
+import dev.inkwell.conrad.impl.networking.util.SyncState;
+import dev.inkwell.conrad.impl.networking.util.WireSession;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.fabricmc.api.EnvironmentInterface;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.fabricmc.fabric.api.networking.v1.ServerLoginConnectionEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
@@ -36,28 +45,113 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @EnvironmentInterface(value = EnvType.CLIENT, itf = ClientPlayNetworking.PlayChannelHandler.class)
 public class ServerConfigS2CChannel extends S2CChannel {
     public static final Identifier ID = new Identifier("conrad", "channel/send_server_values");
 
+    private static final Map<UUID, SyncState> STATES = new ConcurrentHashMap<>();
+    private static final Map<UUID, SyncState> PREPARED = new ConcurrentHashMap<>();
+    private static final Inbox INBOX = new Inbox();
+
+    /**
+     * Sends the values of a LEVEL config to a player. Only values that changed since they were last sent to that
+     * player are included, and nothing is sent if none did.
+     */
     public static void send(ConfigDefinition<?> configDefinition, ValueContainer valueContainer, ServerPlayerEntity player) {
-        PacketByteBuf buf = ConfigNetworking.toPacket(configDefinition, valueContainer);
+        SyncState state = STATES.computeIfAbsent(player.getUuid(), id -> new SyncState());
+        PacketByteBuf buf = ConfigNetworking.toPacket(configDefinition, valueContainer, state, WireSession.get(player.getUuid()));
 
         if (buf != null) {
             ServerPlayNetworking.send(player, ID, buf);
         }
     }
 
+    /**
+     * Sends the values of a LEVEL config to several players, each receiving what changed since they were last sent.
+     * <p>
+     * Players that need the same values, usually all of them, share one encoded packet. Each is sent a duplicate of
+     * it, which shares its contents but has its own indices, so the cost of a broadcast doesn't grow with the number
+     * of players beyond a small wrapper each.
+     */
+    public static <R> void broadcast(ConfigDefinition<R> configDefinition, ValueContainer valueContainer, Collection<ServerPlayerEntity> players) {
+        Map<Encoding, PacketByteBuf> encoded = new HashMap<>();
+
+        for (ServerPlayerEntity player : players) {
+            SyncState state = STATES.computeIfAbsent(player.getUuid(), id -> new SyncState());
+            ConfigNetworking.Changes changes = ConfigNetworking.getChanges(configDefinition, valueContainer, state);
+
+            if (changes == null) continue;
+
+            WireSession session = WireSession.get(player.getUuid());
+            PacketByteBuf buf = encoded.computeIfAbsent(new Encoding(changes, session.getId(configDefinition) >= 0),
+                    encoding -> ConfigNetworking.encode(configDefinition, valueContainer, changes, session));
+
+            if (buf != null) {
+                state.record(configDefinition, changes.current);
+                ServerPlayNetworking.send(player, ID, new PacketByteBuf(buf.duplicate()));
+            }
+        }
+    }
+
+    /**
+     * Records the values a player was found or sent to hold during login, so that they're only sent what changed
+     * once they join.
+     *
+     * @param state the values the player holds, or null if they should be sent full snapshots
+     */
+    static void prepare(UUID player, @Nullable SyncState state) {
+        if (state == null) {
+            PREPARED.remove(player);
+        } else {
+            PREPARED.put(player, state);
+        }
+    }
+
     @Override
     public Identifier getId() {
         return ID;
     }
 
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        super.onInitializeClient();
+
+        ClientTickEvents.START_CLIENT_TICK.register(client -> INBOX.drain());
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) -> INBOX.clear());
+    }
+
+    @Override
+    public void onInitialize() {
+        super.onInitialize();
+
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> STATES.remove(handler.player.getUuid()));
+        ServerLoginConnectionEvents.DISCONNECT.register((handler, server) -> {
+            GameProfile profile = ((GameProfileAccessor) handler).getProfile();
+
+            if (profile != null) {
+                UUID playerId = VersionCheckChannel.getPlayerId(profile);
+
+                // Players that leave before joining never reach the play disconnect handler that would remove these
+                PREPARED.remove(playerId);
+                WireSession.remove(playerId);
+            }
+        });
+    }
+
     @Override
     public void onPlayReady(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
         ValueContainer valueContainer = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
 
+        // A joining player gets a full snapshot of each config, unless they were brought up to date during login
+        SyncState state = PREPARED.remove(handler.player.getUuid());
+        STATES.put(handler.player.getUuid(), state != null ? state : new SyncState());
+
         for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
             if (configDefinition.getSaveType() == SaveType.LEVEL) {
                 send(configDefinition, valueContainer, handler.player);
@@ -68,7 +162,38 @@ public class ServerConfigS2CChannel extends S2CChannel {
     @Override
     @Environment(EnvType.CLIENT)
     public void receive(MinecraftClient client, ClientPlayNetworkHandler handler, PacketByteBuf buf, PacketSender responseSender) {
-        ValueContainer container = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
-        ConfigNetworking.read(buf, s -> container, (Disconnector) handler);
+        INBOX.submit(buf, WireSession.getServer(), (Disconnector) handler, changeSet -> {
+            ValueContainer valueContainer = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
+
+            changeSet.applyTo(valueContainer);
+            ConfigValueC2SChannel.recordReceived(changeSet);
+            ConfigManager.saveAsync(changeSet.getConfigDefinition(), valueContainer);
+        });
+    }
+
+    /**
+     * Config IDs are assigned by the server, so every player with a binary session for a config reads the same bytes.
+     */
+    static final class Encoding {
+        private final ConfigNetworking.Changes changes;
+        private final boolean binary;
+
+        Encoding(ConfigNetworking.Changes changes, boolean binary) {
+            this.changes = changes;
+            this.binary = binary;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Encoding encoding = (Encoding) o;
+            return binary == encoding.binary && changes.equals(encoding.changes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(changes, binary);
+        }
     }
 }
@@ -16,9 +16,17 @@
 
 package dev.inkwell.conrad.impl.networking.channels;
 
+import com.mojang.authlib.GameProfile;
 import dev.inkwell.conrad.api.value.ConfigDefinition;
 import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueContainerProvider;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.api.value.serialization.BinarySerializer;
+import dev.inkwell.conrad.impl.mixin.GameProfileAccessor;
 import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+import dev.inkwell.conrad.impl.networking.util.SyncState;
+import dev.inkwell.conrad.impl.networking.util.WireSession;
 import io.netty.buffer.Unpooled;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
@@ -30,14 +38,14 @@ import net.fabricmc.fabric.api.networking.v1.PacketSender;
 import net.fabricmc.fabric.api.networking.v1.ServerLoginNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientLoginNetworkHandler;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerLoginNetworkHandler;
 import net.minecraft.text.TranslatableText;
 import net.minecraft.util.Identifier;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
@@ -50,36 +58,59 @@ public class VersionCheckChannel extends LoginQueryChannel {
         return ID;
     }
 
+    /**
+     * Announces the version and schema hash of every config we may exchange values for. Their position in the
+     * query becomes their ID for the rest of the connection, see {@link WireSession}.
+     * <p>
+     * LEVEL configs also carry a hash of their current values, so players that already hold them don't need to be
+     * sent them again.
+     */
     @Override
     public void sendQuery(ServerLoginNetworkHandler handler, MinecraftServer server, PacketSender sender, ServerLoginNetworking.LoginSynchronizer synchronizer) {
-        Collection<ConfigDefinition<?>> syncedLevelConfigs = new ArrayList<>();
-
-        for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
-            if (ConfigNetworking.isSynced(configDefinition)) {
-                syncedLevelConfigs.add(configDefinition);
-            }
-        }
+        List<ConfigDefinition<?>> definitions = WireSession.getNetworkedDefinitions();
+        ValueContainer valueContainer = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
 
         PacketByteBuf query = new PacketByteBuf(Unpooled.buffer());
-        query.writeVarInt(syncedLevelConfigs.size());
+        query.writeVarInt(definitions.size());
 
-        for (ConfigDefinition<?> configDefinition : syncedLevelConfigs) {
+        for (ConfigDefinition<?> configDefinition : definitions) {
             query.writeString(configDefinition.toString());
             query.writeVarInt(configDefinition.getVersion().getVersionComponent(0));
+            query.writeInt(BinarySerializer.INSTANCE.getSchemaHash(configDefinition));
+
+            long contentHash = configDefinition.getSaveType() == SaveType.LEVEL
+                    ? ConfigNetworking.getContentHash(configDefinition, valueContainer)
+                    : 0;
+
+            query.writeBoolean(contentHash != 0);
+
+            if (contentHash != 0) {
+                query.writeLong(contentHash);
+            }
         }
+
+        sender.sendPacket(this.getId(), query);
     }
 
     @Override
     @Environment(EnvType.CLIENT)
     public CompletableFuture<PacketByteBuf> handleQuery(MinecraftClient client, ClientLoginNetworkHandler handler, PacketByteBuf buf, Consumer<GenericFutureListener<? extends Future<? super Void>>> listenerAdder) {
         int n = buf.readVarInt();
+        ConfigDefinition<?>[] binary = new ConfigDefinition<?>[n];
+        List<Integer> ids = new ArrayList<>();
+        Map<Integer, Long> cached = new LinkedHashMap<>();
+        ValueContainer valueContainer = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
 
         for (int i = 0; i < n; ++i) {
-            String configDefinitionString = buf.readString();
+            String configDefinitionString = buf.readString(32767);
             ConfigDefinition<?> configDefinition = ConfigManager.getDefinition(configDefinitionString);
             int serverMajorVersion = buf.readVarInt();
+            int schemaHash = buf.readInt();
+            long contentHash = buf.readBoolean() ? buf.readLong() : 0;
+
+            if (configDefinition == null) continue;
 
-            if (configDefinition != null && serverMajorVersion != configDefinition.getVersion().getVersionComponent(0)) {
+            if (serverMajorVersion != configDefinition.getVersion().getVersionComponent(0)) {
                 PacketByteBuf response = new PacketByteBuf(Unpooled.buffer());
                 response.writeEnumConstant(ResponseStatus.INCORRECT_VERSION);
                 response.writeString(configDefinitionString);
@@ -88,14 +119,50 @@ public class VersionCheckChannel extends LoginQueryChannel {
 
                 return CompletableFuture.completedFuture(response);
             }
+
+            if (schemaHash == BinarySerializer.INSTANCE.getSchemaHash(configDefinition)) {
+                binary[i] = configDefinition;
+                ids.add(i);
+
+                // Values are only comparable if both sides write them the same way
+                if (contentHash != 0 && configDefinition.getSaveType() == SaveType.LEVEL) {
+                    long cachedHash = ConfigNetworking.getContentHash(configDefinition, valueContainer);
+
+                    if (cachedHash == contentHash) {
+                        cached.put(i, cachedHash);
+                    }
+                }
+            }
+        }
+
+        WireSession.setServer(new WireSession(binary));
+
+        PacketByteBuf response = new PacketByteBuf(Unpooled.buffer());
+        response.writeEnumConstant(ResponseStatus.SUCCESS);
+        response.writeVarInt(ids.size());
+
+        for (int id : ids) {
+            response.writeVarInt(id);
         }
 
-        return CompletableFuture.completedFuture(new PacketByteBuf(Unpooled.buffer()).writeEnumConstant(ResponseStatus.SUCCESS));
+        response.writeVarInt(cached.size());
+
+        for (Map.Entry<Integer, Long> entry : cached.entrySet()) {
+            response.writeVarInt(entry.getKey());
+            response.writeLong(entry.getValue());
+        }
+
+        return CompletableFuture.completedFuture(response);
     }
 
     @Override
     public void handleQueryResponse(MinecraftServer server, ServerLoginNetworkHandler handler, boolean understood, PacketByteBuf buf, ServerLoginNetworking.LoginSynchronizer synchronizer, PacketSender responseSender) {
-        if (!understood) return;
+        UUID playerId = getPlayerId(((GameProfileAccessor) handler).getProfile());
+
+        if (!understood) {
+            ServerConfigS2CChannel.prepare(playerId, null);
+            return;
+        }
 
         ResponseStatus status = buf.readEnumConstant(ResponseStatus.class);
         String configDefinitionString;
@@ -109,9 +176,79 @@ public class VersionCheckChannel extends LoginQueryChannel {
                     configDefinitionString,
                     userMajorVersion,
                     serverMajorVersion));
+        } else {
+            List<ConfigDefinition<?>> definitions = WireSession.getNetworkedDefinitions();
+            ConfigDefinition<?>[] binary = new ConfigDefinition<?>[definitions.size()];
+            int n = buf.readVarInt();
+
+            for (int i = 0; i < n; ++i) {
+                int id = buf.readVarInt();
+
+                if (id >= 0 && id < binary.length) {
+                    binary[id] = definitions.get(id);
+                }
+            }
+
+            Map<Integer, Long> cached = new HashMap<>();
+
+            for (int i = buf.readVarInt(); i > 0; --i) {
+                cached.put(buf.readVarInt(), buf.readLong());
+            }
+
+            WireSession session = new WireSession(binary);
+            WireSession.put(playerId, session);
+
+            // Values are read on the server thread, and login waits for whatever the player is missing
+            synchronizer.waitFor(CompletableFuture.runAsync(() ->
+                    sendLevelValues(playerId, session, cached, responseSender), server));
         }
     }
 
+    /**
+     * Sends a player the LEVEL configs whose values they don't already hold. Those they do count as sent, so they
+     * only receive what changes from here on once they join. Those that can't be sent during login are sent in full
+     * once they join.
+     *
+     * @param cached the hashes of the values the player holds, by config ID
+     */
+    private static void sendLevelValues(UUID playerId, WireSession session, Map<Integer, Long> cached, PacketSender sender) {
+        List<ConfigDefinition<?>> definitions = WireSession.getNetworkedDefinitions();
+        ValueContainer valueContainer = ValueContainerProvider.getInstance(SaveType.LEVEL).getValueContainer(SaveType.LEVEL);
+        List<ConfigDefinition<?>> missing = new ArrayList<>();
+        SyncState state = new SyncState();
+
+        for (int id = 0; id < definitions.size(); ++id) {
+            ConfigDefinition<?> configDefinition = definitions.get(id);
+
+            if (configDefinition.getSaveType() != SaveType.LEVEL) continue;
+
+            ConfigNetworking.Changes changes = ConfigNetworking.getChanges(configDefinition, valueContainer, null);
+
+            if (changes == null) continue;
+
+            // Values may have changed since the query was sent, in which case the player's hash is stale
+            long contentHash = ConfigNetworking.getContentHash(configDefinition, valueContainer);
+
+            if (contentHash == 0 || !cached.getOrDefault(id, 0L).equals(contentHash)) {
+                missing.add(configDefinition);
+            }
+
+            state.record(configDefinition, changes.current);
+        }
+
+        // Configs too large to send now get a full snapshot once the player joins instead
+        for (ConfigDefinition<?> configDefinition : LevelValuesChannel.send(sender, missing, valueContainer, session)) {
+            state.reset(configDefinition);
+        }
+
+        ServerConfigS2CChannel.prepare(playerId, state);
+    }
+
+    static UUID getPlayerId(GameProfile profile) {
+        // Offline mode profiles only get their ID once the player is accepted, but it's derived from the name
+        return profile.getId() != null ? profile.getId() : PlayerEntity.getOfflinePlayerUuid(profile.getName());
+    }
+
     enum ResponseStatus {
         INCORRECT_VERSION,
         SUCCESS
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * The values of one decoded config packet, detached from any value container so that they can be decoded on one
+ * thread and applied on another.
+ * <p>
+ * A full change set is a snapshot: applying it resets every synced value it doesn't contain to its default.
+ */
+public final class ChangeSet {
+    private final ConfigDefinition<?> configDefinition;
+    private final boolean full;
+    private final boolean forward;
+    private final Map<ValueKey<?>, Object> values;
+
+    private ChangeSet(ConfigDefinition<?> configDefinition, boolean full, boolean forward, Map<ValueKey<?>, Object> values) {
+        this.configDefinition = configDefinition;
+        this.full = full;
+        this.forward = forward;
+        this.values = Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * @param staged a detached container that a packet was decoded into
+     * @return the values of the specified config definition that were decoded into the container
+     */
+    public static ChangeSet of(ConfigDefinition<?> configDefinition, boolean full, boolean forward, ValueContainer staged) {
+        Map<ValueKey<?>, Object> values = new HashMap<>();
+
+        for (ValueKey<?> valueKey : configDefinition) {
+            if (staged.hasValue(valueKey)) {
+                values.put(valueKey, staged.get(valueKey));
+            }
+        }
+
+        return new ChangeSet(configDefinition, full, forward, values);
+    }
+
+    public ConfigDefinition<?> getConfigDefinition() {
+        return this.configDefinition;
+    }
+
+    public boolean isFull() {
+        return this.full;
+    }
+
+    /**
+     * @return whether or not the values should be forwarded to other players
+     */
+    public boolean isForward() {
+        return this.forward;
+    }
+
+    public Map<ValueKey<?>, Object> getValues() {
+        return this.values;
+    }
+
+    /**
+     * Combines this change set with one that was received after it, as if both were applied in order.
+     *
+     * @param later a change set of the same config definition
+     * @return a change set with the latest value of each key
+     */
+    public ChangeSet then(ChangeSet later) {
+        boolean forward = this.forward || later.forward;
+
+        if (later.full) {
+            return new ChangeSet(this.configDefinition, true, forward, later.values);
+        }
+
+        Map<ValueKey<?>, Object> values = new HashMap<>(this.values);
+        values.putAll(later.values);
+
+        return new ChangeSet(this.configDefinition, this.full, forward, values);
+    }
+
+    /**
+     * Puts the values of this change set into a value container. Must be called on the thread that owns the
+     * container, since value listeners are notified of any changes.
+     */
+    public void applyTo(ValueContainer valueContainer) {
+        if (this.full) {
+            Predicate<ValueKey<?>> synced = ConfigNetworking.getSyncPredicate(this.configDefinition);
+
+            if (synced == null) return;
+
+            for (ValueKey<?> valueKey : this.configDefinition) {
+                if (synced.test(valueKey)) {
+                    put(valueKey, this.values.containsKey(valueKey) ? this.values.get(valueKey) : valueKey.getDefaultValue(), valueContainer);
+                }
+            }
+        } else {
+            this.values.forEach((valueKey, value) -> put(valueKey, value, valueContainer));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void put(ValueKey<T> valueKey, Object value, ValueContainer valueContainer) {
+        // Goes through the key rather than the container so that listeners hear about synced values
+        valueKey.setValue((T) value, valueContainer);
+    }
+}
@@ -16,14 +16,13 @@
 
 package dev.inkwell.conrad.impl.networking.util;
 
-import net.minecraft.network.PacketByteBuf;
 import net.minecraft.server.network.ServerPlayerEntity;
 
-import java.util.Map;
-import java.util.UUID;
-
 public interface ConfigValueCache {
-    Iterable<Map.Entry<UUID, Map<String, PacketByteBuf>>> cached();
+    /**
+     * @return the latest synced values of every player, see {@link PeerSnapshot}
+     */
+    PeerSnapshot getPeerSnapshot();
 
     void drop(ServerPlayerEntity player);
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+import dev.inkwell.conrad.impl.util.Metrics;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.text.TranslatableText;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Decodes received config packets away from the network threads and hands them to the game thread.
+ * <p>
+ * Packets are decoded into {@link ChangeSet}s on a dedicated thread, so parsing, deserialization and constraint checks
+ * never hold up other packets. Applying them is queued until {@link #drain} is called at the start of a tick, which
+ * runs everything decoded since the last tick in one batch, so tick code never sees a config halfway through an
+ * update. A single decoder thread is shared by every inbox, which keeps the packets of each connection in order.
+ * <p>
+ * Each connection may only have {@link #MAX_PENDING} packets waiting to be decoded, so that one peer can't fill the
+ * decoder's queue for everybody else. Packets past that are refused before they are copied, and the connection is
+ * closed, since dropping a packet would leave the peer believing we hold values we never applied.
+ */
+public final class Inbox {
+    private static final Metrics.Metric DECODE_TIME = Metrics.get("sync.decode_time_us");
+    private static final Metrics.Metric BATCH_SIZE = Metrics.get("sync.applied_per_tick");
+    private static final Metrics.Metric OVERFLOWS = Metrics.get("sync.decode_overflows");
+    private static final int MAX_PENDING = 32;
+
+    private static final ExecutorService DECODER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Conrad Decoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Map<Disconnector, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Decodes a config packet on the decoder thread, then queues the result to be applied on the next {@link #drain}.
+     *
+     * @param consumer applies the decoded values, called on the game thread
+     * @return whether or not the packet was accepted, see {@link Inbox}
+     */
+    public boolean submit(PacketByteBuf buf, WireSession session, Disconnector disconnector, Consumer<ChangeSet> consumer) {
+        return this.submit(buf, disconnector, (copy, deferred) -> ConfigNetworking.decode(copy, session, deferred), consumer);
+    }
+
+    /**
+     * Decodes a packet on the decoder thread, then queues the result to be applied on the next {@link #drain}.
+     * Disconnects requested while decoding are queued the same way.
+     *
+     * @param disconnector the connection the packet was received on
+     * @param decoder      decodes the packet, returning null if there is nothing to apply
+     * @param consumer     applies the decoded packet, called on the game thread
+     * @return whether or not the packet was accepted, see {@link Inbox}
+     */
+    public <T> boolean submit(PacketByteBuf buf, Disconnector disconnector, Decoder<T> decoder, Consumer<T> consumer) {
+        Connection connection = this.connections.computeIfAbsent(disconnector, d -> new Connection());
+
+        if (connection.closed) return false;
+
+        if (connection.pending.incrementAndGet() > MAX_PENDING) {
+            connection.pending.decrementAndGet();
+            connection.closed = true;
+            OVERFLOWS.increment();
+
+            this.tasks.add(() -> {
+                this.connections.remove(disconnector);
+                disconnector.config_disconnect(new TranslatableText("conrad.rate_limited"));
+            });
+
+            return false;
+        }
+
+        // The received buffer may be released as soon as the packet handler returns
+        PacketByteBuf copy = new PacketByteBuf(Unpooled.copiedBuffer(buf));
+        Disconnector deferred = text -> this.tasks.add(() -> disconnector.config_disconnect(text));
+
+        DECODER.execute(() -> {
+            long start = System.nanoTime();
+
+            try {
+                T decoded = decoder.decode(copy, deferred);
+
+                if (decoded != null) {
+                    this.tasks.add(() -> consumer.accept(decoded));
+                }
+            } catch (RuntimeException e) {
+                ConfigManagerImpl.LOGGER.error("Failed to decode config packet: {}", e.getMessage());
+            } finally {
+                connection.pending.decrementAndGet();
+            }
+
+            DECODE_TIME.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        });
+
+        return true;
+    }
+
+    /**
+     * Applies everything decoded so far. Must be called on the game thread.
+     */
+    public void drain() {
+        int count = 0;
+        Runnable task;
+
+        while ((task = this.tasks.poll()) != null) {
+            task.run();
+            count++;
+        }
+
+        if (count > 0) {
+            BATCH_SIZE.record(count);
+        }
+    }
+
+    /**
+     * Drops everything that has not been applied yet, such as when disconnecting.
+     */
+    public void clear() {
+        this.tasks.clear();
+        this.connections.clear();
+    }
+
+    /**
+     * Drops the pending count of a connection once it has closed. Packets it still has waiting are decoded as usual.
+     */
+    public void remove(Disconnector disconnector) {
+        this.connections.remove(disconnector);
+    }
+
+    private static final class Connection {
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean closed;
+    }
+
+    @FunctionalInterface
+    public interface Decoder<T> {
+        @Nullable T decode(PacketByteBuf buf, Disconnector disconnector);
+    }
+}
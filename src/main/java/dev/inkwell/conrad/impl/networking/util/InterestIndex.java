@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.PeerInterest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which players are interested in the forwarded values of each config, see {@link PeerInterest}.
+ * <p>
+ * Players are given the default interest when they join, which is replaced once their client declares its own.
+ */
+public final class InterestIndex {
+    private final Map<ConfigDefinition<?>, Map<UUID, PeerInterest>> subscribers = new ConcurrentHashMap<>();
+    private final Map<ConfigDefinition<?>, Set<UUID>> ranged = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces every interest of a player.
+     */
+    public void put(UUID player, Collection<PeerInterest> interests) {
+        this.remove(player);
+
+        for (PeerInterest interest : interests) {
+            ConfigDefinition<?> configDefinition = interest.getConfigDefinition();
+            this.subscribers.computeIfAbsent(configDefinition, d -> new ConcurrentHashMap<>()).put(player, interest);
+
+            if (interest.getRange() != PeerInterest.EVERYWHERE) {
+                this.ranged.computeIfAbsent(configDefinition, d -> ConcurrentHashMap.newKeySet()).add(player);
+            }
+        }
+    }
+
+    /**
+     * Gives a player the default interest in every config that is forwarded.
+     */
+    public void putDefault(UUID player) {
+        List<PeerInterest> interests = new ArrayList<>();
+
+        for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
+            if (PeerInterest.isForwarded(configDefinition)) {
+                interests.add(PeerInterest.of(configDefinition));
+            }
+        }
+
+        this.put(player, interests);
+    }
+
+    public void remove(UUID player) {
+        this.subscribers.values().forEach(players -> players.remove(player));
+        this.ranged.values().forEach(players -> players.remove(player));
+    }
+
+    public void clear() {
+        this.subscribers.clear();
+        this.ranged.clear();
+    }
+
+    /**
+     * @return the players interested in values of the specified config, and what they are interested in
+     */
+    public Map<UUID, PeerInterest> getSubscribers(ConfigDefinition<?> configDefinition) {
+        return this.subscribers.getOrDefault(configDefinition, Collections.emptyMap());
+    }
+
+    /**
+     * @return the players only interested in values of players within range, per config
+     */
+    public Map<ConfigDefinition<?>, Set<UUID>> getRanged() {
+        return this.ranged;
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+import dev.inkwell.conrad.impl.util.Metrics;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The latest synced USER values of every player, kept up to date as they are forwarded and sent to joining players
+ * all at once.
+ * <p>
+ * Each player and config has one entry, the full snapshot that was last forwarded for it, so the aggregate never holds
+ * more than one packet's worth of values per player and config. Entries are bundled into deflated chunks small enough
+ * to fit in a single packet each. Every player belongs to one chunk, which is built lazily and reused by every join
+ * until an entry of one of its players changes, so an update only has the chunk it falls in rebuilt.
+ */
+public final class PeerSnapshot {
+    // Custom payloads sent to clients are limited to 1 MiB, deflating never grows data by more than a few bytes per
+    // block, so half of that leaves plenty of room
+    private static final int CHUNK_SIZE = 512 * 1024;
+    private static final int MAX_ENTRY_SIZE = 1024 * 1024;
+
+    // The player's UUID and the length of the entry
+    private static final int ENTRY_OVERHEAD = 20;
+
+    private static final Metrics.Metric BUILT = Metrics.get("sync.peer_snapshot_builds");
+    private static final Metrics.Metric CHUNK_BYTES = Metrics.get("sync.peer_snapshot_chunk_bytes");
+
+    private final Map<UUID, Map<String, byte[]>> entries = new LinkedHashMap<>();
+    private final Map<UUID, Chunk> assigned = new HashMap<>();
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    /**
+     * Replaces the entry of a player for one config.
+     *
+     * @param snapshot a full snapshot readable by any peer, see {@link ConfigNetworking#toPacket}
+     */
+    public synchronized void put(UUID player, String configDefinition, PacketByteBuf snapshot) {
+        byte[] bytes = new byte[snapshot.readableBytes()];
+        snapshot.getBytes(snapshot.readerIndex(), bytes);
+
+        byte[] previous = this.entries.computeIfAbsent(player, id -> new LinkedHashMap<>()).put(configDefinition, bytes);
+        Chunk chunk = this.assigned.get(player);
+
+        if (chunk == null) {
+            this.assign(player);
+            return;
+        }
+
+        chunk.size += bytes.length - (previous == null ? -ENTRY_OVERHEAD : previous.length);
+        chunk.compressed = null;
+
+        // Players that outgrow their chunk move to one with room, rather than pushing it past the packet size limit
+        if (chunk.size > CHUNK_SIZE && chunk.players.size() > 1) {
+            this.unassign(player, chunk, this.size(this.entries.get(player)));
+            this.assign(player);
+        }
+    }
+
+    public synchronized void remove(UUID player) {
+        Map<String, byte[]> removed = this.entries.remove(player);
+        Chunk chunk = this.assigned.remove(player);
+
+        if (removed != null && chunk != null) {
+            this.unassign(player, chunk, this.size(removed));
+        }
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.assigned.clear();
+        this.chunks.clear();
+    }
+
+    private void assign(UUID player) {
+        int size = this.size(this.entries.get(player));
+        Chunk target = null;
+
+        for (Chunk chunk : this.chunks) {
+            if (chunk.size + size <= CHUNK_SIZE) {
+                target = chunk;
+                break;
+            }
+        }
+
+        if (target == null) {
+            target = new Chunk();
+            this.chunks.add(target);
+        }
+
+        target.players.add(player);
+        target.size += size;
+        target.compressed = null;
+        this.assigned.put(player, target);
+    }
+
+    private void unassign(UUID player, Chunk chunk, int size) {
+        chunk.players.remove(player);
+        chunk.size -= size;
+        chunk.compressed = null;
+
+        if (chunk.players.isEmpty()) {
+            this.chunks.remove(chunk);
+        }
+    }
+
+    private int size(Map<String, byte[]> entries) {
+        int size = 0;
+
+        for (byte[] bytes : entries.values()) {
+            size += ENTRY_OVERHEAD + bytes.length;
+        }
+
+        return size;
+    }
+
+    /**
+     * @return the packets to send to a joining player, each of which shares its contents with every other join
+     */
+    public synchronized List<PacketByteBuf> getChunks() {
+        List<PacketByteBuf> packets = new ArrayList<>(this.chunks.size());
+
+        for (Chunk chunk : this.chunks) {
+            if (chunk.compressed == null) {
+                try {
+                    chunk.compressed = this.build(chunk);
+                    BUILT.increment();
+                } catch (IOException e) {
+                    ConfigManagerImpl.LOGGER.error("Failed to build peer config snapshot: {}", e.getMessage());
+                    continue;
+                }
+            }
+
+            packets.add(new PacketByteBuf(Unpooled.wrappedBuffer(chunk.compressed)));
+        }
+
+        return packets;
+    }
+
+    private byte[] build(Chunk chunk) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(chunk.size);
+        DataOutputStream output = new DataOutputStream(raw);
+        int count = 0;
+
+        for (UUID player : chunk.players) {
+            for (byte[] bytes : this.entries.get(player).values()) {
+                output.writeLong(player.getMostSignificantBits());
+                output.writeLong(player.getLeastSignificantBits());
+                output.writeInt(bytes.length);
+                output.write(bytes);
+                count++;
+            }
+        }
+
+        return compress(count, raw.toByteArray());
+    }
+
+    private static byte[] compress(int count, byte[] raw) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try (DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(compressed, deflater))) {
+            output.writeInt(count);
+            output.write(raw);
+        } finally {
+            deflater.end();
+        }
+
+        CHUNK_BYTES.record(compressed.size());
+
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Decodes one chunk built by {@link #getChunks}.
+     *
+     * @return the decoded values of each player in the chunk, or null if the chunk couldn't be read
+     */
+    public static @Nullable Map<UUID, List<ChangeSet>> read(PacketByteBuf buf, Disconnector disconnector) {
+        byte[] compressed = new byte[buf.readableBytes()];
+        buf.readBytes(compressed);
+
+        Map<UUID, List<ChangeSet>> players = new LinkedHashMap<>();
+
+        try (DataInputStream input = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            // Every entry takes up more than its overhead, and a chunk only exceeds its size when it holds a single entry
+            int count = readLength(input, CHUNK_SIZE / ENTRY_OVERHEAD);
+
+            for (int i = 0; i < count; ++i) {
+                UUID player = new UUID(input.readLong(), input.readLong());
+                byte[] bytes = new byte[readLength(input, MAX_ENTRY_SIZE)];
+                input.readFully(bytes);
+
+                // Snapshots are always written as text, since the server can't know which IDs the receiver agreed on
+                ChangeSet changeSet = ConfigNetworking.decode(new PacketByteBuf(Unpooled.wrappedBuffer(bytes)), WireSession.NONE, disconnector);
+
+                if (changeSet != null) {
+                    players.computeIfAbsent(player, id -> new ArrayList<>()).add(changeSet);
+                }
+            }
+        } catch (IOException e) {
+            ConfigManagerImpl.LOGGER.error("Failed to read peer config snapshot: {}", e.getMessage());
+            return null;
+        }
+
+        return players;
+    }
+
+    private static int readLength(DataInput input, int limit) throws IOException {
+        int length = input.readInt();
+
+        if (length < 0 || length > limit) {
+            throw new IOException("Invalid length " + length);
+        }
+
+        return length;
+    }
+
+    private static final class Chunk {
+        private final Set<UUID> players = new LinkedHashSet<>();
+        private int size;
+        private @Nullable byte[] compressed;
+    }
+}
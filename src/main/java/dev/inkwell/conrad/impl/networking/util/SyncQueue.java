@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.util.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects configs whose values need to be sent, and sends each of them once per flush.
+ * <p>
+ * Packets only carry what changed since the peer was last sent a config, see {@link SyncState}, so any number of
+ * changes to the same values between two flushes go out as a single packet with the latest values. The queue is
+ * flushed every {@link ConradConfig.Syncing#INTERVAL} ticks.
+ *
+ * @param <C> the context passed on each tick, such as the server
+ * @param <K> identifies what to send, such as a config definition
+ */
+public final class SyncQueue<C, K> {
+    private static final Metrics.Metric COALESCED = Metrics.get("sync.coalesced");
+    private static final Metrics.Metric FLUSHED = Metrics.get("sync.flushed");
+
+    private final Map<K, ValueContainer> pending = new LinkedHashMap<>();
+    private final Sender<C, K> sender;
+    private int ticks;
+
+    public SyncQueue(Sender<C, K> sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * Marks values as needing to be sent. May be called from any thread.
+     *
+     * @param key            identifies what to send
+     * @param valueContainer the container holding the values to send
+     */
+    public void enqueue(K key, ValueContainer valueContainer) {
+        synchronized (this.pending) {
+            if (this.pending.put(key, valueContainer) != null) {
+                COALESCED.increment();
+            }
+        }
+    }
+
+    public void tick(C context) {
+        int interval = ConradConfig.Syncing.INTERVAL.isInitialized() ? ConradConfig.Syncing.INTERVAL.getValue() : 1;
+
+        if (++this.ticks >= interval) {
+            this.flush(context);
+        }
+    }
+
+    public void flush(C context) {
+        this.ticks = 0;
+
+        Map<K, ValueContainer> batch;
+
+        synchronized (this.pending) {
+            if (this.pending.isEmpty()) return;
+
+            batch = new LinkedHashMap<>(this.pending);
+            this.pending.clear();
+        }
+
+        for (Map.Entry<K, ValueContainer> entry : batch.entrySet()) {
+            this.sender.send(context, entry.getKey(), entry.getValue());
+            FLUSHED.increment();
+        }
+    }
+
+    public void clear() {
+        synchronized (this.pending) {
+            this.pending.clear();
+        }
+
+        this.ticks = 0;
+    }
+
+    @FunctionalInterface
+    public interface Sender<C, K> {
+        void send(C context, K key, ValueContainer valueContainer);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueKey;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The config values last sent to one peer, per config definition.
+ * <p>
+ * Packets on a connection arrive in order, so whatever we sent last is what the peer holds; there is no need to wait
+ * for acknowledgements. A definition without a baseline gets a full snapshot, after which only changed values are
+ * sent. Baselines are dropped when the peer (re)joins.
+ */
+public final class SyncState {
+    private final Map<ConfigDefinition<?>, Map<ValueKey<?>, Object>> sent = new ConcurrentHashMap<>();
+
+    public boolean hasBaseline(ConfigDefinition<?> configDefinition) {
+        return this.sent.containsKey(configDefinition);
+    }
+
+    public Object getSent(ValueKey<?> valueKey) {
+        Map<ValueKey<?>, Object> values = this.sent.get(valueKey.getConfig());
+
+        return values == null ? valueKey.getDefaultValue() : values.getOrDefault(valueKey, valueKey.getDefaultValue());
+    }
+
+    public void record(ConfigDefinition<?> configDefinition, Map<ValueKey<?>, Object> values) {
+        this.sent.computeIfAbsent(configDefinition, d -> new ConcurrentHashMap<>()).putAll(values);
+    }
+
+    /**
+     * Records values the peer sent us, since they hold those values too. A partial change set only updates an existing
+     * baseline, since we can't tell what the peer holds for the values it leaves out.
+     */
+    public void record(ChangeSet changeSet) {
+        ConfigDefinition<?> configDefinition = changeSet.getConfigDefinition();
+
+        if (changeSet.isFull()) {
+            // Values a snapshot leaves out were reset to their defaults, which is what getSent assumes of them
+            this.sent.put(configDefinition, new ConcurrentHashMap<>(changeSet.getValues()));
+        } else if (this.hasBaseline(configDefinition)) {
+            this.record(configDefinition, changeSet.getValues());
+        }
+    }
+
+    public void reset(ConfigDefinition<?> configDefinition) {
+        this.sent.remove(configDefinition);
+    }
+
+    public void reset() {
+        this.sent.clear();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.util.Metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Limits how many config packets and bytes one player may send, with a token bucket for each. Buckets hold up to one
+ * second's worth of tokens, see {@link ConradConfig.Limits}.
+ * <p>
+ * Packets over the limit are not applied. Their change sets are merged into a backlog instead, see
+ * {@link ChangeSet#then}, so only the latest values of each config are kept. The backlog is applied as a single update
+ * once the player has tokens again, and until then every packet from the player should go to the backlog so that
+ * updates are never applied out of order.
+ */
+public final class Throttle {
+    private static final Metrics.Metric THROTTLED_PACKETS = Metrics.get("sync.throttled_packets");
+    private static final Metrics.Metric THROTTLED_BYTES = Metrics.get("sync.throttled_bytes");
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<ConfigDefinition<?>, ChangeSet> pending = new LinkedHashMap<>();
+    private long backlogBytes;
+
+    private double packets = limit(ConradConfig.Limits.PACKETS, 40);
+    private double bytes = limit(ConradConfig.Limits.BYTES, 262144);
+    private long refilled = System.nanoTime();
+
+    private long window = this.refilled;
+    private int strikes;
+
+    private static int limit(ValueKey<Integer> valueKey, int fallback) {
+        return valueKey.isInitialized() ? valueKey.getValue() : fallback;
+    }
+
+    /**
+     * Takes the tokens for a packet, if the player has them and nothing is waiting in the backlog. Bytes may go into
+     * debt, so that packets larger than the limit aren't held back forever.
+     *
+     * @param size the size of the packet in bytes
+     * @return whether or not the packet may be applied right away
+     */
+    public synchronized boolean tryAcquire(int size) {
+        this.refill();
+
+        if (this.pending.isEmpty() && this.take(size)) {
+            return true;
+        }
+
+        THROTTLED_PACKETS.increment();
+        THROTTLED_BYTES.record(size);
+
+        long now = System.nanoTime();
+
+        if (now - this.window >= SECOND) {
+            this.window = now;
+            this.strikes = 0;
+        }
+
+        this.strikes++;
+
+        return false;
+    }
+
+    /**
+     * @return whether or not the player sent more packets over the limit within the last second than allowed
+     */
+    public synchronized boolean isAbusive() {
+        int threshold = limit(ConradConfig.Limits.KICK_THRESHOLD, 400);
+
+        return threshold > 0 && this.strikes > threshold;
+    }
+
+    /**
+     * @return whether or not any packets are waiting in the backlog
+     */
+    public synchronized boolean hasBacklog() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * Adds the values of a held back packet to the backlog.
+     *
+     * @param size the size of the packet in bytes, or 0 if its tokens were already taken
+     */
+    public synchronized void defer(ChangeSet changeSet, int size) {
+        this.pending.merge(changeSet.getConfigDefinition(), changeSet, ChangeSet::then);
+        this.backlogBytes += size;
+    }
+
+    /**
+     * Applies the backlog as a single packet, if the player has the tokens for it.
+     */
+    public synchronized void drain(Consumer<ChangeSet> consumer) {
+        if (this.pending.isEmpty()) return;
+
+        this.refill();
+
+        if (!this.take(this.backlogBytes)) return;
+
+        this.pending.values().forEach(consumer);
+        this.pending.clear();
+        this.backlogBytes = 0;
+    }
+
+    private boolean take(long size) {
+        if (this.packets < 1 || this.bytes <= 0) return false;
+
+        this.packets -= 1;
+        this.bytes -= size;
+
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsed = (double) (now - this.refilled) / SECOND;
+        this.refilled = now;
+
+        int packetRate = limit(ConradConfig.Limits.PACKETS, 40);
+        int byteRate = limit(ConradConfig.Limits.BYTES, 262144);
+
+        this.packets = Math.min(packetRate, this.packets + elapsed * packetRate);
+        this.bytes = Math.min(byteRate, this.bytes + elapsed * byteRate);
+    }
+}
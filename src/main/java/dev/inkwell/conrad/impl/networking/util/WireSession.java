@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.networking.util;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The numeric config definition IDs agreed on with one peer during login.
+ * <p>
+ * The server announces every config it may send or receive values for, in order, along with a schema hash of each;
+ * a definition's ID is its position in that list. The client answers with the IDs whose schema matches its own, and
+ * only those are sent in the binary encoding, where keys are identified by their position in the definition. Values
+ * of any other definition, or of peers that never completed the handshake, are sent as text with full names.
+ */
+public final class WireSession {
+    public static final WireSession NONE = new WireSession(new ConfigDefinition<?>[0]);
+
+    private static final Map<UUID, WireSession> PLAYERS = new ConcurrentHashMap<>();
+    private static volatile WireSession server = NONE;
+    private static volatile WireSession canonical;
+
+    private final ConfigDefinition<?>[] definitions;
+    private final Map<ConfigDefinition<?>, Integer> ids = new HashMap<>();
+
+    /**
+     * @param definitions the definitions that use the binary encoding, indexed by ID; null where they don't
+     */
+    public WireSession(ConfigDefinition<?>[] definitions) {
+        this.definitions = definitions;
+
+        for (int i = 0; i < definitions.length; ++i) {
+            if (definitions[i] != null) {
+                this.ids.put(definitions[i], i);
+            }
+        }
+    }
+
+    /**
+     * @return every config definition whose values can be sent over the network, in ID order
+     */
+    public static List<ConfigDefinition<?>> getNetworkedDefinitions() {
+        List<ConfigDefinition<?>> definitions = new ArrayList<>();
+
+        for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
+            SaveType saveType = configDefinition.getSaveType();
+
+            if (saveType == SaveType.LEVEL || saveType == SaveType.USER) {
+                definitions.add(configDefinition);
+            }
+        }
+
+        return definitions;
+    }
+
+    /**
+     * @return a session using the binary encoding for every networked config, numbered the way this server numbers them
+     */
+    public static WireSession getCanonical() {
+        if (canonical == null) {
+            canonical = new WireSession(getNetworkedDefinitions().toArray(new ConfigDefinition<?>[0]));
+        }
+
+        return canonical;
+    }
+
+    /**
+     * @return the session the client agreed on with the server it is connected to
+     */
+    public static WireSession getServer() {
+        return server;
+    }
+
+    public static void setServer(WireSession session) {
+        server = session;
+    }
+
+    /**
+     * @return the session the server agreed on with a player, or {@link #NONE}
+     */
+    public static WireSession get(UUID player) {
+        return PLAYERS.getOrDefault(player, NONE);
+    }
+
+    public static void put(UUID player, WireSession session) {
+        PLAYERS.put(player, session);
+    }
+
+    public static void remove(UUID player) {
+        PLAYERS.remove(player);
+    }
+
+    /**
+     * @return the ID of the specified definition, or -1 if it isn't sent in the binary encoding
+     */
+    public int getId(ConfigDefinition<?> configDefinition) {
+        return this.ids.getOrDefault(configDefinition, -1);
+    }
+
+    public @Nullable ConfigDefinition<?> getDefinition(int id) {
+        return id >= 0 && id < this.definitions.length ? this.definitions[id] : null;
+    }
+}
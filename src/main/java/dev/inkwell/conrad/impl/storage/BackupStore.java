@@ -0,0 +1,399 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.storage;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.util.Metrics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed, compressed history of the config files in a config directory, stored in 'conrad/backups'.
+ * <p>
+ * Each file is stored once per distinct content as a gzipped object named after its SHA-256 hash. A snapshot is a
+ * small manifest mapping relative file paths to object hashes, so files that didn't change between snapshots cost
+ * nothing but a line in the manifest. Files are only read and hashed again when their size or modification time
+ * changed since we last looked at them.
+ * <p>
+ * Snapshots are taken before upgrading a config file, when a config file fails to parse, and periodically. Each
+ * snapshot records its reason and scope, either a single config or every config. Old snapshots are rotated out by
+ * count and age separately for each reason and scope, so a burst of upgrade snapshots can't push out the failure
+ * snapshot of another config, and the newest snapshot of each is always kept. Objects no longer referenced by any
+ * snapshot are deleted.
+ */
+public final class BackupStore {
+    private static final Map<Path, BackupStore> STORES = new ConcurrentHashMap<>();
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final String ALL_CONFIGS = "*";
+
+    private static final Metrics.Metric SNAPSHOTS = Metrics.get("backup.snapshots");
+    private static final Metrics.Metric STORED_BYTES = Metrics.get("backup.stored_bytes");
+    private static final Metrics.Metric SNAPSHOT_TIME = Metrics.get("backup.snapshot_time_ms");
+
+    private final Path root;
+    private final Path objects;
+    private final Path snapshots;
+    private final Map<Path, CachedHash> hashes = new HashMap<>();
+    private final Map<String, Map<String, String>> latest = new HashMap<>();
+    private final Map<String, String> groups = new HashMap<>();
+
+    private BackupStore(Path root) {
+        this.root = root;
+        this.objects = root.resolve("conrad").resolve("backups").resolve("objects");
+        this.snapshots = root.resolve("conrad").resolve("backups").resolve("snapshots");
+    }
+
+    /**
+     * @param configDirectory the config directory to back up
+     * @return the backup store for that directory
+     */
+    public static BackupStore of(Path configDirectory) {
+        return STORES.computeIfAbsent(configDirectory.toAbsolutePath().normalize(), BackupStore::new);
+    }
+
+    /**
+     * Backs up a single config file and its journal, if it has one. Never throws; failures are logged.
+     *
+     * @param configDefinition the config file to back up
+     * @param valueContainer   the value container whose copy of the file should be backed up
+     * @param reason           a short description of why the snapshot was taken, e.g. 'upgrade'
+     */
+    public static <R> void backup(ConfigDefinition<R> configDefinition, ValueContainer valueContainer, String reason) {
+        if (valueContainer.getSaveDirectory() == null) return;
+
+        List<Path> files = new ArrayList<>();
+        files.add(configDefinition.getSerializer().getPath(configDefinition, valueContainer));
+        files.add(ConfigJournal.getPath(configDefinition, valueContainer));
+
+        try {
+            of(valueContainer.getSaveDirectory()).snapshot(reason, configDefinition.toString(), files, false);
+        } catch (IOException e) {
+            ConfigManagerImpl.LOGGER.warn("Failed to back up '{}': {}", configDefinition, e.getMessage());
+        }
+    }
+
+    /**
+     * Schedules periodic snapshots of every config file in the root config directory.
+     */
+    public static void startPeriodic() {
+        int interval = ConradConfig.Backups.INTERVAL.getValue();
+
+        if (interval <= 0) return;
+
+        WriteBehindSaver.INSTANCE.schedule(() -> {
+            List<Path> files = new ArrayList<>();
+
+            for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
+                if (ValueContainer.ROOT.contains(configDefinition.getSaveType())) {
+                    addFiles(configDefinition, files);
+                }
+            }
+
+            try {
+                of(ValueContainer.ROOT.getSaveDirectory()).snapshot("periodic", ALL_CONFIGS, files, true);
+            } catch (IOException e) {
+                ConfigManagerImpl.LOGGER.warn("Failed to take periodic config backup: {}", e.getMessage());
+            }
+
+            startPeriodic();
+        }, interval, TimeUnit.MINUTES);
+    }
+
+    private static <R> void addFiles(ConfigDefinition<R> configDefinition, List<Path> files) {
+        files.add(configDefinition.getSerializer().getPath(configDefinition, ValueContainer.ROOT));
+        files.add(ConfigJournal.getPath(configDefinition, ValueContainer.ROOT));
+    }
+
+    /**
+     * Takes a snapshot of the specified files. Files that don't exist are skipped.
+     *
+     * @param reason          a short description of why the snapshot was taken, without spaces
+     * @param scope           the config the files belong to, or '*' for every config
+     * @param files           the files to back up, inside this store's config directory
+     * @param skipIfUnchanged whether to skip the snapshot if none of the files changed since the previous snapshot
+     *                        with the same scope
+     * @return the name of the snapshot, or null if none was taken
+     */
+    public synchronized String snapshot(String reason, String scope, Collection<Path> files, boolean skipIfUnchanged) throws IOException {
+        long start = System.nanoTime();
+        Map<String, String> manifest = new TreeMap<>();
+
+        for (Path file : files) {
+            file = file.toAbsolutePath().normalize();
+
+            if (Files.isRegularFile(file)) {
+                manifest.put(this.root.relativize(file).toString().replace(File.separatorChar, '/'), this.store(file));
+            }
+        }
+
+        if (manifest.isEmpty() || (skipIfUnchanged && manifest.equals(this.getLatest(scope)))) {
+            return null;
+        }
+
+        Files.createDirectories(this.snapshots);
+
+        String name = TIMESTAMP.format(LocalDateTime.now()) + "-" + reason;
+        Path path = this.snapshots.resolve(name);
+
+        for (int i = 1; Files.exists(path); ++i) {
+            path = this.snapshots.resolve(name + "-" + i);
+        }
+
+        StringBuilder builder = new StringBuilder("# ").append(reason).append(' ').append(scope).append('\n');
+        manifest.forEach((file, hash) -> builder.append(hash).append(' ').append(file).append('\n'));
+
+        AtomicFiles.write(path, outputStream -> outputStream.write(builder.toString().getBytes(StandardCharsets.UTF_8)));
+
+        this.latest.put(scope, manifest);
+        this.groups.put(path.getFileName().toString(), reason + ' ' + scope);
+        this.rotate();
+
+        SNAPSHOTS.increment();
+        SNAPSHOT_TIME.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        return path.getFileName().toString();
+    }
+
+    /**
+     * @return the names of all snapshots in this store, oldest first
+     */
+    public synchronized List<String> list() throws IOException {
+        if (!Files.isDirectory(this.snapshots)) return Collections.emptyList();
+
+        try (Stream<Path> stream = Files.list(this.snapshots)) {
+            return stream.map(path -> path.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Restores every file in a snapshot. Files whose current content already matches are left alone.
+     *
+     * @param snapshot the name of the snapshot to restore
+     * @return the number of files that were written
+     */
+    public synchronized int restore(String snapshot) throws IOException {
+        int restored = 0;
+
+        for (Map.Entry<String, String> entry : this.read(this.snapshots.resolve(snapshot)).entrySet()) {
+            Path file = this.root.resolve(entry.getKey()).normalize();
+            String hash = entry.getValue();
+
+            if (Files.isRegularFile(file) && hash.equals(this.hash(file))) continue;
+
+            try (InputStream inputStream = new GZIPInputStream(Files.newInputStream(this.getObject(hash)))) {
+                AtomicFiles.write(file, outputStream -> {
+                    byte[] buffer = new byte[8192];
+                    int read;
+
+                    while ((read = inputStream.read(buffer)) > 0) {
+                        outputStream.write(buffer, 0, read);
+                    }
+                });
+            }
+
+            ++restored;
+        }
+
+        return restored;
+    }
+
+    private String store(Path file) throws IOException {
+        String hash = this.hash(file);
+        Path object = this.getObject(hash);
+
+        if (!Files.exists(object)) {
+            byte[] bytes = Files.readAllBytes(file);
+
+            AtomicFiles.write(object, outputStream -> {
+                GZIPOutputStream gzip = new GZIPOutputStream(outputStream);
+                gzip.write(bytes);
+                gzip.finish();
+                gzip.flush();
+            }, FsyncPolicy.NONE);
+
+            STORED_BYTES.record(Files.size(object));
+        }
+
+        return hash;
+    }
+
+    private String hash(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        CachedHash cached = this.hashes.get(file);
+
+        if (cached != null && cached.size == attributes.size() && cached.modified == modified) {
+            return cached.hash;
+        }
+
+        String hash;
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            hash = builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        this.hashes.put(file, new CachedHash(attributes.size(), modified, hash));
+
+        return hash;
+    }
+
+    private Path getObject(String hash) {
+        return this.objects.resolve(hash.substring(0, 2)).resolve(hash + ".gz");
+    }
+
+    private Map<String, String> getLatest(String scope) throws IOException {
+        Map<String, String> latest = this.latest.get(scope);
+
+        if (latest == null) {
+            List<String> snapshots = this.list();
+            latest = Collections.emptyMap();
+
+            for (int i = snapshots.size() - 1; i >= 0; --i) {
+                if (this.getGroup(snapshots.get(i)).endsWith(' ' + scope)) {
+                    latest = this.read(this.snapshots.resolve(snapshots.get(i)));
+                    break;
+                }
+            }
+
+            this.latest.put(scope, latest);
+        }
+
+        return latest;
+    }
+
+    /**
+     * @return the reason and scope of a snapshot, separated by a space, or an empty string for snapshots without one
+     */
+    private String getGroup(String snapshot) throws IOException {
+        String group = this.groups.get(snapshot);
+
+        if (group == null) {
+            try (BufferedReader reader = Files.newBufferedReader(this.snapshots.resolve(snapshot), StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                group = line != null && line.startsWith("# ") ? line.substring(2) : "";
+            }
+
+            this.groups.put(snapshot, group);
+        }
+
+        return group;
+    }
+
+    private Map<String, String> read(Path snapshot) throws IOException {
+        Map<String, String> manifest = new TreeMap<>();
+
+        for (String line : Files.readAllLines(snapshot, StandardCharsets.UTF_8)) {
+            if (line.startsWith("#")) continue;
+
+            int space = line.indexOf(' ');
+
+            if (space > 0) {
+                manifest.put(line.substring(space + 1), line.substring(0, space));
+            }
+        }
+
+        return manifest;
+    }
+
+    private void rotate() throws IOException {
+        Map<String, List<String>> groups = new HashMap<>();
+        int maxCount = ConradConfig.Backups.MAX_COUNT.getValue();
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(ConradConfig.Backups.MAX_AGE.getValue());
+        boolean deleted = false;
+
+        for (String snapshot : this.list()) {
+            groups.computeIfAbsent(this.getGroup(snapshot), group -> new ArrayList<>()).add(snapshot);
+        }
+
+        for (List<String> snapshots : groups.values()) {
+            // The most recent snapshot of each group is always kept
+            for (int i = 0; i < snapshots.size() - 1; ++i) {
+                Path path = this.snapshots.resolve(snapshots.get(i));
+
+                if (snapshots.size() - i > maxCount || Files.getLastModifiedTime(path).toMillis() < cutoff) {
+                    Files.delete(path);
+                    this.groups.remove(snapshots.get(i));
+                    deleted = true;
+                }
+            }
+        }
+
+        if (deleted) {
+            this.collectGarbage();
+        }
+    }
+
+    private void collectGarbage() throws IOException {
+        Set<String> referenced = new HashSet<>();
+
+        for (String snapshot : this.list()) {
+            referenced.addAll(this.read(this.snapshots.resolve(snapshot)).values());
+        }
+
+        if (!Files.isDirectory(this.objects)) return;
+
+        try (Stream<Path> stream = Files.walk(this.objects)) {
+            for (Path object : stream.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                String name = object.getFileName().toString();
+
+                if (name.endsWith(".gz") && !referenced.contains(name.substring(0, name.length() - 3))) {
+                    Files.delete(object);
+                }
+            }
+        }
+    }
+
+    private static final class CachedHash {
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        private CachedHash(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.storage;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.serialization.ConfigSerializer;
+import dev.inkwell.conrad.api.value.util.Version;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.util.Metrics;
+import dev.inkwell.conrad.impl.util.ValueEquality;
+import net.fabricmc.loader.api.VersionParsingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches the config files of a single value container for changes made outside of the game.
+ * <p>
+ * File events are debounced, and only the config files that actually changed are parsed again. Parsing happens on
+ * the watcher thread, into a detached container. The parsed values are then diffed against the live container on the
+ * main thread, and only values that serialize differently are set, so listeners and syncing only see real changes.
+ */
+public final class ConfigFileWatcher implements Runnable {
+    private static final Metrics.Metric RELOADED_FILES = Metrics.get("reload.files");
+    private static final Metrics.Metric RELOADED_VALUES = Metrics.get("reload.changed_values");
+
+    private final ValueContainer valueContainer;
+    private final Executor mainThread;
+    private final Consumer<ConfigDefinition<?>> onReload;
+    private final Map<Path, ConfigDefinition<?>> files = new HashMap<>();
+    private final Map<ConfigDefinition<?>, Long> pending = new LinkedHashMap<>();
+
+    private WatchService watchService;
+    private volatile boolean running;
+
+    /**
+     * @param valueContainer the container whose config files should be watched
+     * @param mainThread     the executor that changed values are applied on
+     * @param onReload       called on the main thread after values of a config file were changed
+     */
+    public ConfigFileWatcher(ValueContainer valueContainer, Executor mainThread, Consumer<ConfigDefinition<?>> onReload) {
+        this.valueContainer = valueContainer;
+        this.mainThread = mainThread;
+        this.onReload = onReload;
+    }
+
+    public void start() throws IOException {
+        Path saveDirectory = this.valueContainer.getSaveDirectory();
+
+        if (saveDirectory == null) return;
+
+        this.watchService = saveDirectory.getFileSystem().newWatchService();
+
+        Set<Path> directories = new HashSet<>();
+
+        for (ConfigDefinition<?> configDefinition : ConfigManager.getConfigKeys()) {
+            if (this.valueContainer.contains(configDefinition.getSaveType())) {
+                Path file = getPath(configDefinition, this.valueContainer).toAbsolutePath().normalize();
+                Path directory = file.getParent();
+
+                this.files.put(file, configDefinition);
+
+                if (directories.add(directory)) {
+                    Files.createDirectories(directory);
+                    directory.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY, OVERFLOW);
+                }
+            }
+        }
+
+        this.running = true;
+
+        Thread thread = new Thread(this, "Conrad File Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        this.running = false;
+
+        if (this.watchService != null) {
+            try {
+                this.watchService.close();
+            } catch (IOException e) {
+                ConfigManagerImpl.LOGGER.warn("Failed to close config file watcher: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long debounce = ConradConfig.Reloading.DEBOUNCE.getValue();
+
+        while (this.running) {
+            WatchKey key;
+
+            try {
+                key = this.watchService.poll(debounce, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+
+            if (key != null) {
+                Path directory = (Path) key.watchable();
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // We lost track of what changed, so check everything
+                        for (ConfigDefinition<?> configDefinition : this.files.values()) {
+                            this.pending.put(configDefinition, System.nanoTime());
+                        }
+                    } else {
+                        Path file = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+                        ConfigDefinition<?> configDefinition = this.files.get(file);
+
+                        if (configDefinition != null) {
+                            this.pending.put(configDefinition, System.nanoTime());
+                        }
+                    }
+                }
+
+                key.reset();
+            }
+
+            long now = System.nanoTime();
+            Iterator<Map.Entry<ConfigDefinition<?>, Long>> iterator = this.pending.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Map.Entry<ConfigDefinition<?>, Long> entry = iterator.next();
+
+                if (TimeUnit.NANOSECONDS.toMillis(now - entry.getValue()) >= debounce) {
+                    iterator.remove();
+                    this.reload(entry.getKey());
+                }
+            }
+        }
+    }
+
+    private <R> void reload(ConfigDefinition<R> configDefinition) {
+        // Deferred configs will read the new file on first access anyway
+        if (!this.valueContainer.isLoaded(configDefinition)) return;
+
+        ConfigSerializer<R> serializer = configDefinition.getSerializer();
+        Path path = serializer.getPath(configDefinition, this.valueContainer);
+
+        if (!Files.exists(path)) return;
+
+        ValueContainer staged = ValueContainer.detached(configDefinition.getSaveType());
+
+        try {
+            Version version;
+
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                version = serializer.getVersion(inputStream);
+            }
+
+            if (version == null || version.compareTo(configDefinition.getVersion()) != 0) {
+                ConfigManagerImpl.LOGGER.warn("Not reloading '{}': file version '{}' does not match '{}'", configDefinition, version, configDefinition.getVersion());
+                return;
+            }
+
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                serializer.deserialize(configDefinition, inputStream, staged);
+            }
+
+            // Journaled changes haven't been folded into the file yet
+            if (ConfigJournal.isJournaled(configDefinition)) {
+                ConfigJournal.replay(configDefinition, ConfigJournal.getPath(configDefinition, this.valueContainer), staged);
+            }
+        } catch (IOException | VersionParsingException | RuntimeException e) {
+            ConfigManagerImpl.LOGGER.warn("Failed to reload '{}' from disk: {}", configDefinition, e.getMessage());
+            return;
+        }
+
+        this.mainThread.execute(() -> this.apply(configDefinition, staged));
+    }
+
+    private void apply(ConfigDefinition<?> configDefinition, ValueContainer staged) {
+        // Values changed in game since the last save win over the file; saving them will trigger another reload
+        if (this.valueContainer.hasUnsavedChanges(configDefinition)) {
+            ConfigManagerImpl.LOGGER.info("Not reloading '{}' from disk, it has unsaved changes", configDefinition);
+            return;
+        }
+
+        int changed = 0;
+
+        for (ValueKey<?> valueKey : configDefinition) {
+            if (this.apply(valueKey, staged)) {
+                ++changed;
+            }
+        }
+
+        RELOADED_FILES.increment();
+
+        if (changed > 0) {
+            RELOADED_VALUES.record(changed);
+
+            // The values we just set came from the file, so there is nothing to write back
+            this.valueContainer.markSaved(configDefinition);
+
+            ConfigManagerImpl.LOGGER.info("Reloaded {} changed value(s) of '{}' from disk", changed, configDefinition);
+
+            this.onReload.accept(configDefinition);
+        }
+    }
+
+    private <T> boolean apply(ValueKey<T> valueKey, ValueContainer staged) {
+        T newValue = staged.get(valueKey);
+
+        if (ValueEquality.equal(valueKey, newValue, this.valueContainer.get(valueKey))) {
+            return false;
+        }
+
+        if (!valueKey.isWithinConstraints(newValue)) {
+            ConfigManagerImpl.LOGGER.warn("Not reloading '{}': value '{}' is not within constraints", valueKey, newValue);
+            return false;
+        }
+
+        valueKey.setValue(newValue, this.valueContainer);
+
+        return true;
+    }
+
+    private static <R> Path getPath(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
+        return configDefinition.getSerializer().getPath(configDefinition, valueContainer);
+    }
+}
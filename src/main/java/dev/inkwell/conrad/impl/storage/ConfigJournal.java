@@ -0,0 +1,494 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.storage;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.data.DataType;
+import dev.inkwell.conrad.api.value.data.StorageType;
+import dev.inkwell.conrad.api.value.util.Array;
+import dev.inkwell.conrad.api.value.util.Table;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.util.Metrics;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only change journal for config definitions using {@link StorageType#JOURNAL}.
+ * <p>
+ * Instead of rewriting the whole config file, each save appends the values that changed since the last save to a
+ * {@code .journal} file next to it. Changes to single entries of an {@link Array} or {@link Table} are recorded per
+ * entry. Record payloads are written with the definition's own serializer, so the journal works with any format.
+ * <p>
+ * Each record is prefixed with its length and a CRC32 checksum; a torn record at the end of the journal is ignored on
+ * load. The journal is folded back into the config file (compacted) when the config is loaded, and in the background
+ * once it passes the configured size or age.
+ */
+public final class ConfigJournal {
+    private static final byte SET = 0;
+    private static final byte TABLE_PUT = 1;
+    private static final byte TABLE_REMOVE = 2;
+    private static final byte ARRAY_SET = 3;
+
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+
+    private static final Metrics.Metric APPENDED_BYTES = Metrics.get("journal.appended_bytes");
+    private static final Metrics.Metric COMPACTIONS = Metrics.get("journal.compactions");
+
+    private static final Map<ValueContainer, Map<ConfigDefinition<?>, State>> STATES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ConfigJournal() {
+    }
+
+    public static boolean isJournaled(ConfigDefinition<?> configDefinition) {
+        for (StorageType storageType : configDefinition.getData(DataType.STORAGE_TYPE)) {
+            return storageType == StorageType.JOURNAL;
+        }
+
+        return false;
+    }
+
+    public static <R> Path getPath(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) {
+        Path path = configDefinition.getSerializer().getPath(configDefinition, valueContainer);
+
+        return path.resolveSibling(path.getFileName() + ".journal");
+    }
+
+    private static State getState(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+        return STATES.computeIfAbsent(valueContainer, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(configDefinition, d -> new State());
+    }
+
+    /**
+     * Writes the whole config file and discards the journal.
+     *
+     * @param configDefinition the config file to compact
+     * @param valueContainer   the value container where values are stored
+     */
+    public static <R> void compact(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) throws IOException {
+        State state = getState(configDefinition, valueContainer);
+
+        synchronized (state) {
+            Map<ValueKey<?>, Object> persisted = new HashMap<>();
+
+            for (ValueKey<?> valueKey : configDefinition) {
+                persisted.put(valueKey, valueContainer.get(valueKey));
+            }
+
+            configDefinition.getSerializer().serialize(configDefinition, valueContainer);
+            Files.deleteIfExists(getPath(configDefinition, valueContainer));
+
+            state.persisted = persisted;
+            state.size = 0;
+            state.started = 0;
+            state.compacting = false;
+
+            COMPACTIONS.increment();
+        }
+    }
+
+    /**
+     * Appends every value that changed since the config file was last saved to its journal.
+     *
+     * @param configDefinition the config file to save
+     * @param valueContainer   the value container where values are stored
+     */
+    public static <R> void append(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) throws IOException {
+        State state = getState(configDefinition, valueContainer);
+
+        synchronized (state) {
+            // We don't know what's on disk yet, so write everything once
+            if (state.persisted == null) {
+                compact(configDefinition, valueContainer);
+                return;
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            Map<ValueKey<?>, Object> persisted = new HashMap<>();
+
+            for (ValueKey<?> valueKey : configDefinition) {
+                Object value = valueContainer.get(valueKey);
+                diff(configDefinition, valueKey, state.persisted.get(valueKey), value, out);
+                persisted.put(valueKey, value);
+            }
+
+            state.persisted = persisted;
+
+            if (bytes.size() == 0) return;
+
+            try (FileChannel channel = FileChannel.open(getPath(configDefinition, valueContainer), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                if (ConradConfig.Saving.FSYNC.getValue() != FsyncPolicy.NONE) {
+                    channel.force(false);
+                }
+            }
+
+            APPENDED_BYTES.record(bytes.size());
+
+            state.size += bytes.size();
+
+            if (state.started == 0) {
+                state.started = System.nanoTime();
+            }
+
+            long age = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - state.started);
+
+            if (!state.compacting && (state.size > ConradConfig.Journal.COMPACT_SIZE.getValue() * 1024L
+                    || age > ConradConfig.Journal.COMPACT_AGE.getValue())) {
+                state.compacting = true;
+
+                WriteBehindSaver.INSTANCE.submit(() -> {
+                    try {
+                        compact(configDefinition, valueContainer);
+                    } catch (IOException e) {
+                        state.compacting = false;
+                        ConfigManagerImpl.LOGGER.error("Failed to compact journal of '{}': {}", configDefinition, e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Applies the journal of a config file on top of the values already in the value container.
+     *
+     * @param configDefinition the config file in question
+     * @param valueContainer   the value container where values are stored
+     * @return the number of records applied
+     */
+    public static <R> int replay(ConfigDefinition<R> configDefinition, ValueContainer valueContainer) throws IOException {
+        return replay(configDefinition, getPath(configDefinition, valueContainer), valueContainer);
+    }
+
+    /**
+     * Applies a journal file on top of the values already in the target value container.
+     *
+     * @param configDefinition the config file in question
+     * @param path             the journal file to read
+     * @param target           the value container to apply changes to
+     * @return the number of records applied
+     */
+    public static <R> int replay(ConfigDefinition<R> configDefinition, Path path, ValueContainer target) throws IOException {
+        if (!Files.exists(path)) return 0;
+
+        Map<String, ValueKey<?>> valueKeys = new HashMap<>();
+
+        for (ValueKey<?> valueKey : configDefinition) {
+            valueKeys.put(valueKey.getPathString(), valueKey);
+        }
+
+        int count = 0;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                int length;
+
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                byte[] body;
+                CRC32 crc = new CRC32();
+
+                try {
+                    long checksum = in.readInt() & 0xFFFFFFFFL;
+
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        throw new EOFException();
+                    }
+
+                    body = new byte[length];
+                    in.readFully(body);
+                    crc.update(body);
+
+                    if (crc.getValue() != checksum) {
+                        throw new EOFException();
+                    }
+                } catch (EOFException e) {
+                    // Most likely the game stopped in the middle of an append; everything before it is still good
+                    ConfigManagerImpl.LOGGER.warn("Ignoring incomplete record at the end of '{}'", path);
+                    break;
+                }
+
+                try {
+                    apply(configDefinition, valueKeys, body, target);
+                    ++count;
+                } catch (RuntimeException e) {
+                    ConfigManagerImpl.LOGGER.warn("Skipping journal record of '{}': {}", configDefinition, e.getMessage());
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static <R> void diff(ConfigDefinition<R> configDefinition, ValueKey<?> valueKey, Object oldValue, Object newValue, DataOutputStream out) throws IOException {
+        if (oldValue == newValue || Objects.equals(oldValue, newValue)) return;
+
+        if (oldValue instanceof Table && newValue instanceof Table
+                && diffTable(configDefinition, valueKey, (Table<?>) oldValue, (Table<?>) newValue, out)) return;
+
+        if (oldValue instanceof Array && newValue instanceof Array
+                && diffArray(configDefinition, valueKey, (Array<?>) oldValue, (Array<?>) newValue, out)) return;
+
+        writeRecord(out, SET, valueKey, "", -1, encode(configDefinition, valueKey, newValue));
+    }
+
+    /**
+     * @return false if the change can't be expressed as a few entry changes, in which case nothing is written
+     */
+    @SuppressWarnings("unchecked")
+    private static <R, T> boolean diffTable(ConfigDefinition<R> configDefinition, ValueKey<?> valueKey, Table<T> oldTable, Table<?> newValue, DataOutputStream out) throws IOException {
+        Table<T> newTable = (Table<T>) newValue;
+        Map<String, T> oldEntries = entries(oldTable);
+        Map<String, T> newEntries = entries(newTable);
+
+        if (oldEntries == null || newEntries == null) return false;
+
+        List<String> kept = new ArrayList<>();
+
+        for (String key : oldEntries.keySet()) {
+            if (newEntries.containsKey(key)) {
+                kept.add(key);
+            }
+        }
+
+        // Kept entries must stay in order, and added entries must come last, since puts append to the table
+        int i = 0;
+        int changes = oldEntries.size() - kept.size();
+
+        for (Map.Entry<String, T> entry : newEntries.entrySet()) {
+            if (oldEntries.containsKey(entry.getKey())) {
+                if (i >= kept.size() || !kept.get(i).equals(entry.getKey())) return false;
+                ++i;
+
+                if (!Objects.equals(oldEntries.get(entry.getKey()), entry.getValue())) {
+                    ++changes;
+                }
+            } else if (i < kept.size()) {
+                return false;
+            } else {
+                ++changes;
+            }
+        }
+
+        if (changes * 2 > newEntries.size()) return false;
+
+        for (String key : oldEntries.keySet()) {
+            if (!newEntries.containsKey(key)) {
+                writeRecord(out, TABLE_REMOVE, valueKey, key, -1, new byte[0]);
+            }
+        }
+
+        for (Map.Entry<String, T> entry : newEntries.entrySet()) {
+            String key = entry.getKey();
+
+            if (!oldEntries.containsKey(key) || !Objects.equals(oldEntries.get(key), entry.getValue())) {
+                Table<T> single = new Table<>(newTable.getValueClass(), newTable.getDefaultValue(), new Table.Entry<>(key, entry.getValue()));
+                writeRecord(out, TABLE_PUT, valueKey, key, -1, encode(configDefinition, valueKey, single));
+            }
+        }
+
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R, T> boolean diffArray(ConfigDefinition<R> configDefinition, ValueKey<?> valueKey, Array<T> oldArray, Array<?> newValue, DataOutputStream out) throws IOException {
+        Array<T> newArray = (Array<T>) newValue;
+
+        if (oldArray.size() != newArray.size()) return false;
+
+        List<Integer> changed = new ArrayList<>();
+
+        for (int i = 0; i < newArray.size(); ++i) {
+            if (!Objects.equals(oldArray.get(i), newArray.get(i))) {
+                changed.add(i);
+            }
+        }
+
+        if (changed.size() * 2 > newArray.size()) return false;
+
+        for (int i : changed) {
+            T[] values = (T[]) java.lang.reflect.Array.newInstance(newArray.getValueClass(), 1);
+            values[0] = newArray.get(i);
+
+            writeRecord(out, ARRAY_SET, valueKey, "", i, encode(configDefinition, valueKey, new Array<>(newArray.getValueClass(), newArray.getDefaultValue(), values)));
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the entries of the table in order, or null if it contains duplicate keys
+     */
+    private static <T> Map<String, T> entries(Table<T> table) {
+        Map<String, T> entries = new LinkedHashMap<>();
+
+        for (Table.Entry<String, T> entry : table) {
+            if (entries.containsKey(entry.getKey())) return null;
+
+            entries.put(entry.getKey(), entry.getValue());
+        }
+
+        return entries;
+    }
+
+    private static void writeRecord(DataOutputStream out, byte op, ValueKey<?> valueKey, String entryKey, int index, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 64);
+        DataOutputStream body = new DataOutputStream(bytes);
+
+        body.writeByte(op);
+        body.writeUTF(valueKey.getPathString());
+        body.writeUTF(entryKey);
+        body.writeInt(index);
+        body.writeInt(payload.length);
+        body.write(payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+
+        out.writeInt(bytes.size());
+        out.writeInt((int) crc.getValue());
+        bytes.writeTo(out);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <R> void apply(ConfigDefinition<R> configDefinition, Map<String, ValueKey<?>> valueKeys, byte[] record, ValueContainer target) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            byte op = in.readByte();
+            ValueKey<?> valueKey = valueKeys.get(in.readUTF());
+            String entryKey = in.readUTF();
+            int index = in.readInt();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+
+            // The value was removed from the config since this was written
+            if (valueKey == null) return;
+
+            Object value = target.get(valueKey);
+
+            switch (op) {
+                case SET:
+                    value = decode(configDefinition, valueKey, payload);
+                    break;
+                case TABLE_PUT:
+                    for (Object entry : (Table<?>) decode(configDefinition, valueKey, payload)) {
+                        value = put((Table) value, entryKey, ((Table.Entry) entry).getValue());
+                    }
+                    break;
+                case TABLE_REMOVE:
+                    value = remove((Table<?>) value, entryKey);
+                    break;
+                case ARRAY_SET:
+                    if (index < ((Array<?>) value).size()) {
+                        value = ((Array) value).set(index, ((Array<?>) decode(configDefinition, valueKey, payload)).get(0));
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown journal record type " + op);
+            }
+
+            set(valueKey, value, target);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> Table<T> put(Table<T> table, String key, T value) {
+        int i = 0;
+
+        for (Table.Entry<String, T> entry : table) {
+            if (entry.getKey().equals(key)) {
+                return table.set(i, value);
+            }
+
+            ++i;
+        }
+
+        Table<T> added = table.addEntry();
+
+        return added.setKey(added.size() - 1, key).set(added.size() - 1, value);
+    }
+
+    private static <T> Table<T> remove(Table<T> table, String key) {
+        int i = 0;
+
+        for (Table.Entry<String, T> entry : table) {
+            if (entry.getKey().equals(key)) {
+                return table.remove(i);
+            }
+
+            ++i;
+        }
+
+        return table;
+    }
+
+    private static <R> byte[] encode(ConfigDefinition<R> configDefinition, ValueKey<?> valueKey, Object value) throws IOException {
+        ValueContainer staged = ValueContainer.detached(configDefinition.getSaveType());
+        set(valueKey, value, staged);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        configDefinition.getSerializer().serialize(configDefinition, bytes, staged, key -> key == valueKey, true);
+
+        return bytes.toByteArray();
+    }
+
+    private static <R> Object decode(ConfigDefinition<R> configDefinition, ValueKey<?> valueKey, byte[] payload) throws IOException {
+        ValueContainer staged = ValueContainer.detached(configDefinition.getSaveType());
+        configDefinition.getSerializer().deserialize(configDefinition, new ByteArrayInputStream(payload), staged);
+
+        return staged.get(valueKey);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void set(ValueKey<T> valueKey, Object value, ValueContainer valueContainer) {
+        if (valueContainer.isDetached()) {
+            valueContainer.put(valueKey, (T) value);
+        } else if (valueKey.isWithinConstraints((T) value)) {
+            valueKey.setValue((T) value, valueContainer);
+        } else {
+            ConfigManagerImpl.LOGGER.warn("Skipping journaled value '{}' for '{}': not within constraints", value, valueKey);
+        }
+    }
+
+    private static final class State {
+        private Map<ValueKey<?>, Object> persisted;
+        private long size;
+        private long started;
+        private volatile boolean compacting;
+    }
+}
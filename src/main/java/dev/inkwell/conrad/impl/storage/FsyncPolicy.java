@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.storage;
+
+/**
+ * Controls how hard Conrad tries to make sure a saved config file actually reached the disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Leave flushing to the operating system. Fastest, but a power loss may lose recent saves.
+     */
+    NONE,
+
+    /**
+     * Flush the file contents before it replaces the old file.
+     */
+    FILE,
+
+    /**
+     * Flush the file contents and the directory entry, so the rename itself survives a power loss.
+     */
+    FILE_AND_DIRECTORY
+}
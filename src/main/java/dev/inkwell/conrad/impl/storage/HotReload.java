@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.storage;
+
+import dev.inkwell.conrad.api.value.SyncConfigValues;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueContainerProvider;
+import dev.inkwell.conrad.api.value.data.SaveType;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.networking.ConfigNetworking;
+import dev.inkwell.conrad.impl.networking.channels.ServerConfigS2CChannel;
+import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.api.EnvType;
+import net.fabricmc.api.Environment;
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Starts and stops {@link ConfigFileWatcher}s for the root config directory and each world's config directory when
+ * hot reloading is enabled.
+ */
+public class HotReload implements ModInitializer, ClientModInitializer {
+    private static final Map<MinecraftServer, Collection<ConfigFileWatcher>> SERVER_WATCHERS = new ConcurrentHashMap<>();
+    private static ConfigFileWatcher CLIENT_WATCHER = null;
+
+    private static boolean start(ConfigFileWatcher watcher) {
+        try {
+            watcher.start();
+            return true;
+        } catch (IOException e) {
+            ConfigManagerImpl.LOGGER.warn("Failed to watch config files for changes: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void onInitialize() {
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            if (!ConradConfig.Reloading.WATCH.getValue()) return;
+
+            Collection<ConfigFileWatcher> watchers = new ArrayList<>();
+            ValueContainer valueContainer = ((ValueContainerProvider) server).getValueContainer(SaveType.LEVEL);
+
+            watchers.add(new ConfigFileWatcher(valueContainer, server::execute, configDefinition ->
+                    ServerConfigS2CChannel.broadcast(configDefinition, valueContainer, PlayerLookup.all(server))));
+
+            // On the client, the root directory is watched for the whole session instead
+            if (server.isDedicated()) {
+                watchers.add(new ConfigFileWatcher(ValueContainer.ROOT, server::execute, configDefinition -> {}));
+            }
+
+            watchers.removeIf(watcher -> !start(watcher));
+            SERVER_WATCHERS.put(server, watchers);
+        });
+
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            Collection<ConfigFileWatcher> watchers = SERVER_WATCHERS.remove(server);
+
+            if (watchers != null) {
+                watchers.forEach(ConfigFileWatcher::stop);
+            }
+        });
+    }
+
+    @Override
+    @Environment(EnvType.CLIENT)
+    public void onInitializeClient() {
+        ClientLifecycleEvents.CLIENT_STARTED.register(client -> {
+            if (!ConradConfig.Reloading.WATCH.getValue()) return;
+
+            ConfigFileWatcher watcher = new ConfigFileWatcher(ValueContainer.ROOT, client::execute, configDefinition -> {
+                if (configDefinition.getSaveType() == SaveType.USER && ConfigNetworking.isSynced(configDefinition)) {
+                    SyncConfigValues.sendConfigValues(configDefinition, ValueContainer.ROOT);
+                }
+            });
+
+            if (start(watcher)) {
+                CLIENT_WATCHER = watcher;
+            }
+        });
+
+        ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+            if (CLIENT_WATCHER != null) {
+                CLIENT_WATCHER.stop();
+                CLIENT_WATCHER = null;
+            }
+        });
+    }
+}
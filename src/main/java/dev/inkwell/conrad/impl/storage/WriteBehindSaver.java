@@ -0,0 +1,190 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.storage;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ValueContainer;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.impl.ConfigManagerImpl;
+import dev.inkwell.conrad.impl.ConradConfig;
+import dev.inkwell.conrad.impl.util.Metrics;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves config files on a dedicated I/O thread.
+ * <p>
+ * Saves of the same config file in the same value container that are requested within the configured delay of each
+ * other are coalesced into a single write, which always uses the latest values in the container. Pending saves are
+ * flushed when the game shuts down.
+ * <p>
+ * A config counts as saved as soon as its save is queued, and is marked as having unsaved changes again if the write
+ * fails.
+ */
+public final class WriteBehindSaver {
+    public static final WriteBehindSaver INSTANCE = new WriteBehindSaver();
+
+    private static final Metrics.Metric QUEUE_LATENCY = Metrics.get("save.queue_latency_ms");
+    private static final Metrics.Metric WRITE_TIME = Metrics.get("save.write_time_ms");
+    private static final Metrics.Metric COALESCED = Metrics.get("save.coalesced");
+
+    private final Map<Key, Pending> pending = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService executor;
+
+    private WriteBehindSaver() {
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Conrad I/O");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Conrad I/O Shutdown"));
+    }
+
+    /**
+     * Queues a save of the specified config file.
+     *
+     * @param configDefinition the config file to save
+     * @param valueContainer   the value container where values are stored
+     */
+    public void enqueue(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+        Key key = new Key(configDefinition, valueContainer);
+        Set<ValueKey<?>> modified = valueContainer.takeUnsavedChanges(configDefinition);
+        boolean[] coalesced = {true};
+
+        this.pending.compute(key, (k, pending) -> {
+            if (pending == null) {
+                coalesced[0] = false;
+                pending = new Pending(System.nanoTime());
+            }
+
+            pending.modified.addAll(modified);
+
+            return pending;
+        });
+
+        if (coalesced[0]) {
+            COALESCED.increment();
+            return;
+        }
+
+        this.executor.schedule(() -> this.write(key), ConradConfig.Saving.DELAY.getValue(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a storage task on the I/O thread, after any writes that are already due.
+     *
+     * @param task the task to run
+     */
+    public void submit(Runnable task) {
+        this.executor.execute(() -> {
+            synchronized (this.writeLock) {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * Runs a storage task on the I/O thread after the specified delay.
+     *
+     * @param task  the task to run
+     * @param delay the time to wait before running the task
+     * @param unit  the unit of {@code delay}
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        this.executor.schedule(() -> {
+            synchronized (this.writeLock) {
+                task.run();
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Immediately writes every pending save on the calling thread.
+     */
+    public void flush() {
+        for (Key key : this.pending.keySet()) {
+            this.write(key);
+        }
+    }
+
+    private void write(Key key) {
+        synchronized (this.writeLock) {
+            Pending pending = this.pending.remove(key);
+
+            // Somebody else already wrote this one
+            if (pending == null) return;
+
+            long start = System.nanoTime();
+            QUEUE_LATENCY.record(TimeUnit.NANOSECONDS.toMillis(start - pending.enqueued));
+
+            boolean saved = false;
+
+            try {
+                saved = key.valueContainer.trySave(key.configDefinition);
+            } catch (Exception e) {
+                ConfigManagerImpl.LOGGER.error("Failed to save '{}' to disk: {}", key.configDefinition, e.getMessage());
+            }
+
+            if (!saved) {
+                key.valueContainer.restoreUnsavedChanges(key.configDefinition, pending.modified);
+            }
+
+            WRITE_TIME.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static final class Pending {
+        private final long enqueued;
+        private final Set<ValueKey<?>> modified = new HashSet<>();
+
+        private Pending(long enqueued) {
+            this.enqueued = enqueued;
+        }
+    }
+
+    private static final class Key {
+        private final ConfigDefinition<?> configDefinition;
+        private final ValueContainer valueContainer;
+
+        private Key(ConfigDefinition<?> configDefinition, ValueContainer valueContainer) {
+            this.configDefinition = configDefinition;
+            this.valueContainer = valueContainer;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return configDefinition.equals(key.configDefinition) && valueContainer == key.valueContainer;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(configDefinition, System.identityHashCode(valueContainer));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.util;
+
+import dev.inkwell.conrad.api.value.ConfigDefinition;
+import dev.inkwell.conrad.api.value.ConfigManager;
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.data.DataType;
+import dev.inkwell.conrad.api.value.lang.Translator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the rendered comment blocks of config values and definitions, per language.
+ *
+ * <p>Blocks are rendered at most once per language. The metadata of a definition is fixed when it is created, and
+ * values drop their cached blocks whenever data or flags are added to them, which is only possible until post
+ * initializers have finished.
+ */
+public final class CommentCache {
+    private static final Map<String, Blocks> LANGUAGES = new ConcurrentHashMap<>();
+
+    private CommentCache() {
+    }
+
+    /**
+     * Resolves the current language once; callers rendering many values should hold onto the result for the duration
+     * of a single save.
+     *
+     * @return the comment blocks for the current language
+     */
+    public static Blocks current() {
+        return LANGUAGES.computeIfAbsent(Translator.getLanguageCode(), language -> new Blocks());
+    }
+
+    public static List<String> get(ValueKey<?> valueKey) {
+        return current().get(valueKey);
+    }
+
+    /**
+     * Drops the cached blocks of a value in every language, after its metadata changed.
+     */
+    public static void invalidate(ValueKey<?> valueKey) {
+        for (Blocks blocks : LANGUAGES.values()) {
+            blocks.values.remove(valueKey);
+        }
+    }
+
+    public static final class Blocks {
+        private final Map<ValueKey<?>, List<String>> values = new ConcurrentHashMap<>();
+        private final Map<ConfigDefinition<?>, List<String>> definitions = new ConcurrentHashMap<>();
+
+        private Blocks() {
+        }
+
+        /**
+         * @return the full comment block of the value, including its data, flags and constraints
+         */
+        public List<String> get(ValueKey<?> valueKey) {
+            return this.values.computeIfAbsent(valueKey, CommentCache::render);
+        }
+
+        /**
+         * @return the comment lines attached to the definition itself
+         */
+        public List<String> get(ConfigDefinition<?> configDefinition) {
+            return this.definitions.computeIfAbsent(configDefinition, CommentCache::render);
+        }
+    }
+
+    private static List<String> render(ValueKey<?> valueKey) {
+        return Collections.unmodifiableList(new ArrayList<>(ConfigManager.getComments(valueKey)));
+    }
+
+    private static List<String> render(ConfigDefinition<?> configDefinition) {
+        List<String> lines = new ArrayList<>();
+        configDefinition.getData(DataType.COMMENT).forEach(lines::add);
+
+        return Collections.unmodifiableList(lines);
+    }
+}
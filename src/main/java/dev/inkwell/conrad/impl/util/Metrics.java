@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight named metrics for Conrad's internals, such as save latency or packet counts.
+ */
+public final class Metrics {
+    private static final Map<String, Metric> METRICS = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * @param name the name of the metric, including its unit if it has one, e.g. 'save.queue_latency_ms'
+     * @return the metric with the given name, created if it does not yet exist
+     */
+    public static Metric get(String name) {
+        return METRICS.computeIfAbsent(name, n -> new Metric());
+    }
+
+    /**
+     * @return a read-only, name-ordered view of every metric recorded so far
+     */
+    public static Map<String, Metric> all() {
+        return Collections.unmodifiableMap(METRICS);
+    }
+
+    public static final class Metric {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Metric() {
+        }
+
+        public void increment() {
+            this.record(1);
+        }
+
+        public void record(long value) {
+            this.count.increment();
+            this.total.add(value);
+            this.max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getTotal() {
+            return this.total.sum();
+        }
+
+        public long getMax() {
+            return this.max.get();
+        }
+
+        public double getMean() {
+            long count = this.getCount();
+            return count == 0 ? 0 : (double) this.getTotal() / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, total=%d, mean=%.2f, max=%d", this.getCount(), this.getTotal(), this.getMean(), this.getMax());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.util;
+
+import dev.inkwell.owen.Owen;
+import dev.inkwell.owen.OwenElement;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a flat Owen document one top-level {@code key = value} entry at a time, so that no more than one entry is
+ * ever held in memory as text or as a tree.
+ * <p>
+ * Only as much of the syntax is tracked as it takes to tell where an entry ends: quoted strings and brackets. An entry
+ * starts on any line outside of those that begins with a key followed by '='. Parsing the entry itself is left to
+ * {@link Owen#parse}, so the grammar never drifts from the library's. Should an entry be split where it shouldn't,
+ * its parts fail to parse on their own and are joined with the lines that follow until they parse together.
+ */
+public final class OwenEntryReader implements Closeable {
+    private static final Pattern ENTRY = Pattern.compile("^\\s*[a-zA-Z][a-zA-Z0-9./+:_-]*\\s*=.*");
+
+    private final BufferedReader reader;
+    private final StringBuilder entry = new StringBuilder();
+    private boolean hasKey;
+
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    public OwenEntryReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Reads the next entry, along with any comments that follow it.
+     *
+     * @return the entry parsed as a document of its own, usually with a single key, or null at the end of the document
+     */
+    public @Nullable OwenElement next() throws IOException {
+        String line;
+
+        while ((line = this.reader.readLine()) != null) {
+            boolean starts = this.depth == 0 && !this.inString && ENTRY.matcher(line).matches();
+
+            if (starts && this.hasKey) {
+                OwenElement parsed = this.tryParse();
+
+                if (parsed != null) {
+                    this.entry.setLength(0);
+                    this.append(line);
+                    return parsed;
+                }
+            }
+
+            this.hasKey |= starts;
+            this.append(line);
+        }
+
+        if (!this.hasKey) return null;
+
+        try {
+            return Owen.parse(this.entry.toString());
+        } catch (ParseException e) {
+            throw new IOException(e);
+        } finally {
+            this.entry.setLength(0);
+            this.hasKey = false;
+        }
+    }
+
+    private @Nullable OwenElement tryParse() {
+        try {
+            return Owen.parse(this.entry.toString());
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private void append(String line) {
+        if (this.entry.length() > 0) {
+            this.entry.append('\n');
+        }
+
+        this.entry.append(line);
+
+        for (int i = 0; i < line.length(); ++i) {
+            char c = line.charAt(i);
+
+            if (this.inString) {
+                if (this.escaped) {
+                    this.escaped = false;
+                } else if (c == '\\') {
+                    this.escaped = true;
+                } else if (c == '"') {
+                    this.inString = false;
+                }
+            } else if (c == '"') {
+                this.inString = true;
+            } else if (c == '[' || c == '{') {
+                this.depth++;
+            } else if ((c == ']' || c == '}') && this.depth > 0) {
+                this.depth--;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
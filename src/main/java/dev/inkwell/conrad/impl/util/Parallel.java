@@ -0,0 +1,198 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.util;
+
+import dev.inkwell.conrad.impl.ConradConfig;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Splits work over the elements of very large config collections into chunks processed on a shared fork-join pool.
+ * Collections smaller than {@link ConradConfig.Parallel#THRESHOLD} are processed sequentially on the calling thread,
+ * as is any work the caller doesn't know to be thread safe.
+ */
+public final class Parallel {
+    private static final int DEFAULT_THRESHOLD = 4096;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static volatile ForkJoinPool pool;
+
+    private Parallel() {
+    }
+
+    /**
+     * @param size the number of elements to be processed
+     * @return whether or not processing that many elements should be split across threads
+     */
+    public static boolean isWorthwhile(int size) {
+        int threshold = ConradConfig.Parallel.THRESHOLD.isInitialized()
+                ? ConradConfig.Parallel.THRESHOLD.getValue()
+                : DEFAULT_THRESHOLD;
+
+        return threshold > 0 && size >= threshold && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Applies a function to each element of a list, storing the results in the same order.
+     *
+     * @param input      the elements to process
+     * @param output     the array to store results in, at least as long as the input
+     * @param function   the function to apply to each element
+     * @param threadSafe whether or not the function may be applied from several threads at once
+     * @return the output array
+     */
+    public static <T, R> R[] map(List<T> input, R[] output, Function<T, R> function, boolean threadSafe) {
+        if (!threadSafe || !isWorthwhile(input.size())) {
+            for (int i = 0; i < input.size(); ++i) {
+                output[i] = function.apply(input.get(i));
+            }
+        } else {
+            getPool().invoke(new MapTask<>(input, output, function, 0, input.size(), chunkSize(input.size())));
+        }
+
+        return output;
+    }
+
+    /**
+     * Once one element fails, chunks that are already running stop at their next element and the rest are skipped.
+     *
+     * @param input     the elements to test
+     * @param predicate the test each element must pass, which must be safe to run from several threads at once
+     * @return whether or not every element passes the predicate
+     */
+    public static <T> boolean allMatch(List<T> input, Predicate<T> predicate) {
+        if (!isWorthwhile(input.size())) {
+            for (T t : input) {
+                if (!predicate.test(t)) return false;
+            }
+
+            return true;
+        }
+
+        return getPool().invoke(new MatchTask<>(input, predicate, new AtomicBoolean(), 0, input.size(), chunkSize(input.size())));
+    }
+
+    private static int chunkSize(int size) {
+        return Math.max(256, size / (getPool().getParallelism() * CHUNKS_PER_THREAD));
+    }
+
+    private static ForkJoinPool getPool() {
+        if (pool == null) {
+            synchronized (Parallel.class) {
+                if (pool == null) {
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+                        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                        thread.setName("Conrad Worker-" + thread.getPoolIndex());
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }, null, false);
+                }
+            }
+        }
+
+        return pool;
+    }
+
+    private static final class MapTask<T, R> extends RecursiveAction {
+        private final List<T> input;
+        private final R[] output;
+        private final Function<T, R> function;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private MapTask(List<T> input, R[] output, Function<T, R> function, int from, int to, int chunkSize) {
+            this.input = input;
+            this.output = output;
+            this.function = function;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.chunkSize) {
+                for (int i = this.from; i < this.to; ++i) {
+                    this.output[i] = this.function.apply(this.input.get(i));
+                }
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+
+                invokeAll(new MapTask<>(this.input, this.output, this.function, this.from, middle, this.chunkSize),
+                        new MapTask<>(this.input, this.output, this.function, middle, this.to, this.chunkSize));
+            }
+        }
+    }
+
+    private static final class MatchTask<T> extends RecursiveTask<Boolean> {
+        private final List<T> input;
+        private final Predicate<T> predicate;
+        private final AtomicBoolean failed;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        private MatchTask(List<T> input, Predicate<T> predicate, AtomicBoolean failed, int from, int to, int chunkSize) {
+            this.input = input;
+            this.predicate = predicate;
+            this.failed = failed;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (this.to - this.from <= this.chunkSize) {
+                for (int i = this.from; i < this.to; ++i) {
+                    // Cancelling a task doesn't stop it once it has started, so chunks check in with each other instead
+                    if (this.failed.get()) return false;
+
+                    if (!this.predicate.test(this.input.get(i))) {
+                        this.failed.set(true);
+                        return false;
+                    }
+                }
+
+                return true;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            MatchTask<T> right = new MatchTask<>(this.input, this.predicate, this.failed, middle, this.to, this.chunkSize);
+            right.fork();
+
+            boolean left = new MatchTask<>(this.input, this.predicate, this.failed, this.from, middle, this.chunkSize).compute();
+
+            // No need to wait on the other half once one element has already failed
+            if (!left) {
+                right.cancel(false);
+                return false;
+            }
+
+            return right.join() && !this.failed.get();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+public final class TextStreams {
+    private TextStreams() {
+    }
+
+    /**
+     * Reads a whole UTF-8 stream into a string with '\n' line endings and no trailing line break, in a single pass.
+     * <p>
+     * Produces the same text as joining {@link java.io.BufferedReader#lines()} with '\n', without creating a string
+     * per line. The stream is closed afterwards.
+     *
+     * @param inputStream the stream to read
+     * @return the normalized contents of the stream
+     */
+    public static String readNormalized(InputStream inputStream) throws IOException {
+        StringBuilder builder = new StringBuilder(Math.max(16, inputStream.available()));
+        char[] buffer = new char[8192];
+        boolean carriageReturn = false;
+
+        try (Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            int read;
+
+            while ((read = reader.read(buffer)) != -1) {
+                for (int i = 0; i < read; ++i) {
+                    char c = buffer[i];
+
+                    if (c == '\r') {
+                        builder.append('\n');
+                        carriageReturn = true;
+                        continue;
+                    }
+
+                    if (c != '\n' || !carriageReturn) {
+                        builder.append(c);
+                    }
+
+                    carriageReturn = false;
+                }
+            }
+        }
+
+        int length = builder.length();
+
+        if (length > 0 && builder.charAt(length - 1) == '\n') {
+            builder.setLength(length - 1);
+        }
+
+        return builder.toString();
+    }
+}
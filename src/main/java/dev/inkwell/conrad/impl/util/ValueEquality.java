@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Haven King
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dev.inkwell.conrad.impl.util;
+
+import dev.inkwell.conrad.api.value.ValueKey;
+import dev.inkwell.conrad.api.value.serialization.BinarySerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares config values by what they serialize to.
+ * <p>
+ * Tables, arrays and data classes don't implement {@code equals}, so two copies of the same value, such as the one in
+ * a container and the one just read from a file, would otherwise never be equal.
+ */
+public final class ValueEquality {
+    // Defaults never change, so each is only encoded once
+    private static final Map<ValueKey<?>, byte[]> DEFAULTS = new ConcurrentHashMap<>();
+    private static final byte[] UNENCODABLE = new byte[0];
+
+    private ValueEquality() {
+    }
+
+    /**
+     * @return whether or not both values of the specified key would be serialized the same way
+     */
+    public static boolean equal(ValueKey<?> valueKey, Object a, Object b) {
+        if (Objects.equals(a, b)) return true;
+        if (a == null || b == null || hasValueEquality(a)) return false;
+
+        try {
+            return Arrays.equals(BinarySerializer.INSTANCE.encode(valueKey, a), BinarySerializer.INSTANCE.encode(valueKey, b));
+        } catch (IOException | RuntimeException e) {
+            // Values the binary serializer can't handle only have their own equals to go by, which already said no
+            return false;
+        }
+    }
+
+    /**
+     * @return whether or not the value would be serialized the same way as the default value of the specified key
+     */
+    public static boolean isDefault(ValueKey<?> valueKey, Object value) {
+        if (value == null) return false;
+        if (hasValueEquality(value)) return value.equals(valueKey.getDefaultValue());
+
+        byte[] defaultValue = DEFAULTS.computeIfAbsent(valueKey, ValueEquality::encodeDefault);
+
+        if (defaultValue == UNENCODABLE) return value.equals(valueKey.getDefaultValue());
+
+        try {
+            return Arrays.equals(BinarySerializer.INSTANCE.encode(valueKey, value), defaultValue);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static byte[] encodeDefault(ValueKey<?> valueKey) {
+        try {
+            return BinarySerializer.INSTANCE.encode(valueKey, valueKey.getDefaultValue());
+        } catch (IOException | RuntimeException e) {
+            return UNENCODABLE;
+        }
+    }
+
+    private static boolean hasValueEquality(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Enum;
+    }
+}
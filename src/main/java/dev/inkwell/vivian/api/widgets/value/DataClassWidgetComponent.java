@@ -20,6 +20,7 @@ import dev.inkwell.conrad.api.gui.EntryBuilderRegistry;
 import dev.inkwell.conrad.api.gui.ValueWidgetFactory;
 import dev.inkwell.conrad.api.value.ConfigDefinition;
 import dev.inkwell.conrad.api.value.util.ListView;
+import dev.inkwell.conrad.impl.data.DataClassAccessor;
 import dev.inkwell.conrad.impl.data.DataObject;
 import dev.inkwell.conrad.impl.gui.widgets.Mutable;
 import dev.inkwell.vivian.api.builders.CategoryBuilder;
@@ -34,16 +35,17 @@ import net.minecraft.text.Text;
 import net.minecraft.text.TranslatableText;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Field;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 public class DataClassWidgetComponent<D> extends SubScreenWidget<D> implements ConfigScreenBuilder {
     private final Class<D> dataClass;
+    private final DataClassAccessor<D> accessor;
 
     public DataClassWidgetComponent(ConfigScreen parent, int width, int height, ConfigDefinition<?> config, Supplier<@NotNull D> defaultValueSupplier, Consumer<D> changedListener, Consumer<D> saveConsumer, @NotNull D value, Class<D> dataClass) {
         super(config, parent, width, height, defaultValueSupplier, changedListener, saveConsumer, value, new TranslatableText(dataClass.getName()));
         this.dataClass = dataClass;
+        this.accessor = DataClassAccessor.of(dataClass);
     }
 
     @Override
@@ -55,14 +57,10 @@ public class DataClassWidgetComponent<D> extends SubScreenWidget<D> implements C
     public ConfigScreen build(Screen screen) {
         CategoryBuilder category = new CategoryBuilder(this.name.copy()).setSaveCallback(this::save);
 
-        Field[] declaredFields = this.dataClass.getDeclaredFields();
-        for (int j = 0; j < declaredFields.length; j++) {
-            int finalJ = j;
-
+        for (DataClassAccessor.Property property : this.accessor.getProperties()) {
             category.add((parent, x, y, width, consumer) -> {
-                Field field = declaredFields[finalJ];
-                Text name = new TranslatableText(this.dataClass.getName() + "." + field.getName());
-                WidgetComponent widget = this.build(parent, x, y, width, name, field.getType(), field);
+                Text name = new TranslatableText(this.dataClass.getName() + "." + property.getName());
+                WidgetComponent widget = this.build(parent, x, y, width, name, property.getType(), property);
 
                 consumer.accept(widget);
                 consumer.accept(new LabelComponent(parent, x, y, width / 2, 20, name));
@@ -80,62 +78,37 @@ public class DataClassWidgetComponent<D> extends SubScreenWidget<D> implements C
     }
 
     @SuppressWarnings("unchecked")
-    private <T> WidgetComponent build(ConfigScreen parent, int x, int y, int width, Text name, Class<T> type, Field field) {
-        try {
-            field.setAccessible(true);
-            T value = (T) field.get(this.getValue());
-            ValueWidgetFactory<T> factory = EntryBuilderRegistry.get(type, t -> {
-            });
-
-            if (factory instanceof EntryBuilderRegistry.DataClassValueWidgetFactory) {
-                ((EntryBuilderRegistry.DataClassValueWidgetFactory<T>) factory).setOuterSaveConsumer(
-                        t -> this.save()
-                );
-            }
-
-            return factory.build(
-                    parent,
-                    x + width / 2,
-                    y,
-                    width / 2,
-                    name,
-                    this.config,
-                    ListView.empty(),
-                    DataObject.EMPTY,
-                    () -> {
-                        try {
-                            return (T) field.get(this.dataClass.newInstance());
-                        } catch (IllegalAccessException | InstantiationException e) {
-                            throw new RuntimeException(e);
-                        }
-                    },
-                    v -> {
-                    },
-                    v -> this.setValue(field, v),
-                    value
+    private <T> WidgetComponent build(ConfigScreen parent, int x, int y, int width, Text name, Class<T> type, DataClassAccessor.Property property) {
+        T value = (T) property.get(this.getValue());
+        ValueWidgetFactory<T> factory = EntryBuilderRegistry.get(type, t -> {
+        });
+
+        if (factory instanceof EntryBuilderRegistry.DataClassValueWidgetFactory) {
+            ((EntryBuilderRegistry.DataClassValueWidgetFactory<T>) factory).setOuterSaveConsumer(
+                    t -> this.save()
             );
-        } catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
         }
 
+        return factory.build(
+                parent,
+                x + width / 2,
+                y,
+                width / 2,
+                name,
+                this.config,
+                ListView.empty(),
+                DataObject.EMPTY,
+                () -> (T) property.get(this.accessor.newInstance()),
+                v -> {
+                },
+                v -> this.setValue(property, v),
+                value
+        );
     }
 
-    private void setValue(Field field, Object value) {
-        try {
-            D d = this.getValue();
-            D newValue = this.dataClass.newInstance();
-            field.setAccessible(true);
-
-            for (Field field1 : this.dataClass.getDeclaredFields()) {
-                field1.setAccessible(true);
-                field1.set(newValue, field1.equals(field) ? value : field1.get(d));
-            }
-
-            this.setValue(newValue);
-            this.save();
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new RuntimeException(e);
-        }
+    private void setValue(DataClassAccessor.Property property, Object value) {
+        this.setValue(this.accessor.with(this.getValue(), property, value));
+        this.save();
     }
 
     class Dummy extends WidgetComponent implements Mutable {